@@ -0,0 +1,113 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+import android.test.AndroidTestCase;
+
+import java.util.List;
+
+/**
+ * Checks that single item writes that fail without throwing still roll back the transaction or savepoint
+ * they joined. A trigger rejects notes with the text "bad", so those inserts and updates fail inside SQLite
+ */
+public class TransactionTest extends AndroidTestCase {
+	private static final String DB_NAME = "transaction_test.db";
+
+	private ReflectionDBHelper helper;
+
+	public static class Note extends DefaultReflectTable {
+		public String text;
+
+		public Note() {
+		}
+
+		Note(String text) {
+			this.text = text;
+		}
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		getContext().deleteDatabase(DB_NAME);
+		helper = new ReflectionDBHelper(getContext(), DB_NAME, "note", 1, Note.class);
+		helper.execSQL(Note.class, "CREATE TRIGGER reject_bad_insert BEFORE INSERT ON note WHEN NEW.text = 'bad' "
+				+ "BEGIN SELECT RAISE(ABORT, 'bad note'); END");
+		helper.execSQL(Note.class, "CREATE TRIGGER reject_bad_update BEFORE UPDATE ON note WHEN NEW.text = 'bad' "
+				+ "BEGIN SELECT RAISE(ABORT, 'bad note'); END");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		helper.getDatabaseHelper().close();
+		getContext().deleteDatabase(DB_NAME);
+		super.tearDown();
+	}
+
+	public void testFailedAddRollsBackTransaction() {
+		try {
+			helper.inTransaction(new UnitOfWork() {
+				@Override
+				public void run(ReflectionDBHelper helper) throws Exception {
+					assertTrue(helper.addItem(Note.class, new Note("good")) > 0);
+					assertEquals(-1, helper.addItem(Note.class, new Note("bad")));
+				}
+			});
+			fail("Transaction with a failed add was not rolled back");
+		} catch (DBException expected) {
+		}
+		assertEquals(0, helper.getAllItems(Note.class).size());
+	}
+
+	public void testFailedUpdateRollsBackTransaction() throws DBException {
+		final Note note = new Note("first");
+		helper.addItem(Note.class, note);
+		try {
+			helper.inTransaction(new UnitOfWork() {
+				@Override
+				public void run(ReflectionDBHelper helper) throws Exception {
+					helper.addItem(Note.class, new Note("second"));
+					note.text = "bad";
+					helper.updateItem(Note.class, note);
+				}
+			});
+			fail("Transaction with a failed update was not rolled back");
+		} catch (DBException expected) {
+		}
+		List<? extends ReflectTableInterface> notes = helper.getAllItems(Note.class);
+		assertEquals(1, notes.size());
+		assertEquals("first", ((Note) notes.get(0)).text);
+	}
+
+	public void testFailedWriteRollsBackOnlyItsSavepoint() throws DBException {
+		final Note note = new Note("first");
+		helper.addItem(Note.class, note);
+		helper.inTransaction(new UnitOfWork() {
+			@Override
+			public void run(ReflectionDBHelper helper) throws Exception {
+				assertTrue(helper.tryInTransaction(new UnitOfWork() {
+					@Override
+					public void run(ReflectionDBHelper helper) throws Exception {
+						helper.addItem(Note.class, new Note("kept"));
+					}
+				}));
+				assertFalse(helper.tryInTransaction(new UnitOfWork() {
+					@Override
+					public void run(ReflectionDBHelper helper) throws Exception {
+						helper.addItem(Note.class, new Note("skipped add"));
+						helper.addItem(Note.class, new Note("bad"));
+					}
+				}));
+				assertFalse(helper.tryInTransaction(new UnitOfWork() {
+					@Override
+					public void run(ReflectionDBHelper helper) throws Exception {
+						helper.addItem(Note.class, new Note("skipped update"));
+						note.text = "bad";
+						helper.updateItem(Note.class, note);
+					}
+				}));
+			}
+		});
+		assertEquals(1, helper.getItemsWhere(Note.class, "text", "first").size());
+		assertEquals(1, helper.getItemsWhere(Note.class, "text", "kept").size());
+		assertEquals(2, helper.getAllItems(Note.class).size());
+	}
+}
@@ -9,7 +9,10 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
 * Author: Kevin Moore
@@ -17,6 +20,7 @@ import java.util.List;
 * Note: Put a wrapper class around this class to access fields and methods from class in other packages
 */
 public class UtilReflector {
+	private static final Map<Class, List<Field>> persistentFields = new ConcurrentHashMap<Class, List<Field>>();
 
 	/**
 	 * Return the class object associated with this string.
@@ -271,6 +275,26 @@ public class UtilReflector {
 		return list;
 	}
 
+	/**
+	 * Return all non transient fields of the class and its superclasses, already made accessible.
+	 * The result is cached per class and can't be modified, so it is safe to share between threads.
+	 *
+	 * @param mainClass class to get the fields from
+	 * @return List<Field>
+	 */
+	public static List<Field> getPersistentFields(Class mainClass) {
+		List<Field> fields = persistentFields.get(mainClass);
+		if (fields == null) {
+			ArrayList<Field> allFields = removeTransient(getAllFields(mainClass));
+			for (Field field : allFields) {
+				field.setAccessible(true);
+			}
+			fields = Collections.unmodifiableList(allFields);
+			persistentFields.put(mainClass, fields);
+		}
+		return fields;
+	}
+
 	/**
 	 * getFieldNames - method to return the names of all of the fields
 	 *
@@ -40,4 +40,15 @@ public abstract class AbstractDataMapper<T> implements DataMapper<T> {
         }
         return null;
     }
+
+    /**
+     * Return the field with the given column name using the cached class schema.
+     * The field is already accessible
+     * @param type
+     * @param column
+     * @return Field
+     */
+    public static Field getColumnField(Class type, Column column) {
+        return ClassSchema.get(type).getField(column.getName());
+    }
 }
@@ -3,7 +3,9 @@ package com.mastertechsoftware.easysqllibrary.sql;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
+import android.os.OperationCanceledException;
 
 import com.mastertechsoftware.logging.Logger;
 
@@ -14,6 +16,7 @@ import java.util.List;
  * Class that implements all methods so subclasses can implement only those methods needed.
  */
 public class AbstractTable<T> extends Table<T> {
+    private volatile RowBinder<T> rowBinder;
 
     public AbstractTable() {
     }
@@ -26,6 +29,42 @@ public class AbstractTable<T> extends Table<T> {
         super(columns, tableName);
     }
 
+    @Override
+    protected void columnsChanged() {
+        super.columnsChanged();
+        rowBinder = null;
+    }
+
+    /**
+     * Get the binder used to read rows from this cursor. The binder is cached and reused as long as
+     * queries return the same columns and use the same mapper.
+     * @param cursor
+     * @param mapper
+     * @return RowBinder
+     */
+    protected RowBinder<T> getRowBinder(Cursor cursor, DataMapper<T> mapper) {
+        RowBinder<T> binder = rowBinder;
+        if (binder == null || !binder.matches(cursor, mapper)) {
+            binder = createRowBinder(cursor, mapper);
+            rowBinder = binder;
+        }
+        return binder;
+    }
+
+    /**
+     * Create a new row binder for the cursor and mapper. Subclasses can return a binder that
+     * knows more about the mapper.
+     * @param cursor
+     * @param mapper
+     * @return RowBinder
+     */
+    protected RowBinder<T> createRowBinder(Cursor cursor, DataMapper<T> mapper) {
+        if (mapper instanceof GeneratedDataMapper) {
+            return new RowBinder.GeneratedRowBinder<T>(cursor, columns, (GeneratedDataMapper<T>) mapper);
+        }
+        return new RowBinder<T>(cursor, columns, mapper);
+    }
+
     @Override
     public T insertEntry(Database database, T data) {
         return null;
@@ -166,6 +205,41 @@ public class AbstractTable<T> extends Table<T> {
         return null;
     }
 
+    /**
+     * Query this table. With a control its signal is passed to SQLite so the statement can be interrupted
+     * @param readDatabase
+     * @param selection
+     * @param selectionArgs
+     * @param control may be null
+     * @return Cursor
+     * @throws QueryCanceledException if the control is already cancelled
+     */
+    protected Cursor query(SQLiteDatabase readDatabase, String selection, String[] selectionArgs, QueryControl control)
+            throws QueryCanceledException {
+        return query(readDatabase, selection, selectionArgs, null, null, control);
+    }
+
+    /**
+     * Query this table in order, up to a limit
+     * @param readDatabase
+     * @param selection
+     * @param selectionArgs
+     * @param orderBy null for no order
+     * @param limit null for all rows
+     * @param control may be null
+     * @return Cursor
+     * @throws QueryCanceledException if the control is already cancelled
+     */
+    protected Cursor query(SQLiteDatabase readDatabase, String selection, String[] selectionArgs, String orderBy,
+                           String limit, QueryControl control) throws QueryCanceledException {
+        if (control == null) {
+            return readDatabase.query(getTableName(), getProjection(), selection, selectionArgs, null, null, orderBy, limit);
+        }
+        control.throwIfCanceled();
+        return readDatabase.query(false, getTableName(), getProjection(), selection, selectionArgs, null, null, orderBy, limit,
+                control.getCancellationSignal());
+    }
+
     /**
      * Get a single entry and return the object using a mapper.
      * @param database
@@ -174,11 +248,24 @@ public class AbstractTable<T> extends Table<T> {
      * @return T
      */
     public T getEntry(Database database, Object key, T data, DataMapper<T> mapper) throws DBException {
+        return getEntry(database, key, data, mapper, QueryControl.current());
+    }
+
+    /**
+     * Get a single entry and return the object using a mapper.
+     * @param database
+     * @param key
+     * @param mapper
+     * @param control may be null
+     * @return T
+     */
+    public T getEntry(Database database, Object key, T data, DataMapper<T> mapper, QueryControl control) throws DBException {
         Cursor cursor = null;
         String[] params = { String.valueOf(key) };
+        SQLiteDatabase readDatabase = database.acquireReadDatabase();
+        QueryControl previous = QueryControl.enter(control);
         try {
-            cursor = database.getDatabase().query(getTableName(), getProjection(), getIdField() + "=?",
-                    params, null, null, null);
+            cursor = query(readDatabase, getIdField() + "=?", params, control);
             if (cursor == null) {
                 return null;
             }
@@ -186,15 +273,10 @@ public class AbstractTable<T> extends Table<T> {
                 cursor.close();
                 return null;
             }
-            int columnPosition = 0;
-            for (Column column : columns) {
-                if (column.column_position == 0) {
-                    column.column_position = columnPosition;
-                }
-                mapper.read(cursor, column, data);
-                columnPosition++;
-            }
+            getRowBinder(cursor, mapper).bind(cursor, data);
             return data;
+        } catch (OperationCanceledException e) {
+            throw new QueryCanceledException("Query canceled", e);
         } catch (SQLiteException e) {
             Logger.error(e.getMessage(), e);
 			throw new DBException(e.getMessage(), e);
@@ -202,6 +284,8 @@ public class AbstractTable<T> extends Table<T> {
             if (cursor != null) {
                 cursor.close();
             }
+            database.releaseReadDatabase(readDatabase);
+            QueryControl.exit(previous);
         }
     }
 
@@ -216,9 +300,10 @@ public class AbstractTable<T> extends Table<T> {
      */
     public T getEntry(Database database, String selection, String[] selectionArgs, T data, DataMapper<T> mapper) throws DBException {
         Cursor cursor = null;
+        SQLiteDatabase readDatabase = database.acquireReadDatabase();
         try {
-            cursor = database.getDatabase().query(getTableName(), getProjection(), selection,
-                                                  selectionArgs, null, null, null);
+            cursor = readDatabase.query(getTableName(), getProjection(), selection,
+                                      selectionArgs, null, null, null);
             if (cursor == null) {
                 return null;
             }
@@ -226,14 +311,7 @@ public class AbstractTable<T> extends Table<T> {
                 cursor.close();
                 return null;
             }
-            int columnPosition = 0;
-            for (Column column : columns) {
-                if (column.column_position == 0) {
-                    column.column_position = columnPosition;
-                }
-                mapper.read(cursor, column, data);
-                columnPosition++;
-            }
+            getRowBinder(cursor, mapper).bind(cursor, data);
             return data;
         } catch (SQLiteException e) {
             Logger.error(e.getMessage(), e);
@@ -242,6 +320,7 @@ public class AbstractTable<T> extends Table<T> {
             if (cursor != null) {
                 cursor.close();
             }
+            database.releaseReadDatabase(readDatabase);
         }
     }
 
@@ -257,8 +336,9 @@ public class AbstractTable<T> extends Table<T> {
     public T getEntry(Database database, T data, String columnName, String columnValue, DataMapper<T> mapper) throws DBException {
         Cursor cursor = null;
         String[] params = { String.valueOf(columnValue) };
+        SQLiteDatabase readDatabase = database.acquireReadDatabase();
         try {
-            cursor = database.getDatabase().query(getTableName(), getProjection(), columnName + "=?",
+            cursor = readDatabase.query(getTableName(), getProjection(), columnName + "=?",
                     params, null, null, null);
             if (cursor == null) {
                 return null;
@@ -267,14 +347,7 @@ public class AbstractTable<T> extends Table<T> {
                 cursor.close();
                 return null;
             }
-            int columnPosition = 0;
-            for (Column column : columns) {
-                if (column.column_position == 0) {
-                    column.column_position = columnPosition;
-                }
-                mapper.read(cursor, column, data);
-                columnPosition++;
-            }
+            getRowBinder(cursor, mapper).bind(cursor, data);
             return data;
         } catch (SQLiteException e) {
             Logger.error(e.getMessage(), e);
@@ -283,6 +356,7 @@ public class AbstractTable<T> extends Table<T> {
             if (cursor != null) {
                 cursor.close();
             }
+            database.releaseReadDatabase(readDatabase);
         }
     }
 
@@ -298,6 +372,7 @@ public class AbstractTable<T> extends Table<T> {
         Cursor result;
         String[] params = { String.valueOf(id) };
         try {
+            // The cursor is read after this returns, so it can't use a pooled connection
             result = database.getDatabase().query(getTableName(), getProjection(), getIdField() + "=?",
                     params, null, null, null);
         } catch (SQLiteException e) {
@@ -319,12 +394,13 @@ public class AbstractTable<T> extends Table<T> {
         Cursor result;
         String[] params = { columnValue };
         try {
+            // The cursor is read after this returns, so it can't use a pooled connection
             result = database.getDatabase().query(getTableName(), getProjection(), columnName + "=?",
                     params, null, null, null);
         } catch (SQLiteException e) {
             Logger.error(e.getMessage(), e);
 			throw new DBException(e.getMessage(), e);
-	    }
+        }
         return result;
     }
 
@@ -452,11 +528,25 @@ public class AbstractTable<T> extends Table<T> {
      * @return List<T>
      */
     public List<? extends T> getAllEntries(Database database, Class<? extends T> cls, DataMapper<T> mapper) throws DBException {
+        return getAllEntries(database, cls, mapper, QueryControl.current());
+    }
+
+    /**
+     * Get all entries and return a list of items.
+     * @param database
+     * @param cls
+     * @param mapper
+     * @param control may be null
+     * @return List<T>
+     */
+    public List<? extends T> getAllEntries(Database database, Class<? extends T> cls, DataMapper<T> mapper, QueryControl control)
+		throws DBException {
         Cursor cursor = null;
         List<T> dataList = new ArrayList<T>();
+        SQLiteDatabase readDatabase = database.acquireReadDatabase();
+        QueryControl previous = QueryControl.enter(control);
         try {
-            cursor = database.getDatabase().query(getTableName(), getProjection(), null, null, null,
-                    null, null);
+            cursor = query(readDatabase, null, null, control);
             if (cursor == null) {
                 return dataList;
             }
@@ -464,18 +554,17 @@ public class AbstractTable<T> extends Table<T> {
                 cursor.close();
                 return dataList;
             }
+            RowBinder<T> binder = getRowBinder(cursor, mapper);
             do  {
-                int columnPosition = 0;
-                T data = cls.newInstance();
-                for (Column column : columns) {
-                    if (column.column_position == 0) {
-                        column.column_position = columnPosition;
-                    }
-                    mapper.read(cursor, column, data);
-                    columnPosition++;
+                if (control != null) {
+                    control.throwIfCanceled();
                 }
+                T data = cls.newInstance();
+                binder.bind(cursor, data);
                 dataList.add(data);
             } while (cursor.moveToNext());
+        } catch (OperationCanceledException e) {
+            throw new QueryCanceledException("Query canceled", e);
         } catch (SQLiteException | IllegalAccessException | InstantiationException e) {
             Logger.error(e.getMessage(), e);
 			throw new DBException(e.getMessage(), e);
@@ -483,6 +572,8 @@ public class AbstractTable<T> extends Table<T> {
 			if (cursor != null) {
 				cursor.close();
 			}
+			database.releaseReadDatabase(readDatabase);
+			QueryControl.exit(previous);
         }
         return dataList;
     }
@@ -498,13 +589,28 @@ public class AbstractTable<T> extends Table<T> {
      */
     public List<T> getAllEntriesWhere(Database database, Class<T> cls, String columnName, String columnValue, DataMapper<T> mapper)
 		throws DBException {
+        return getAllEntriesWhere(database, cls, columnName, columnValue, mapper, QueryControl.current());
+    }
+
+    /**
+     * Get all the entries that match the given column value.
+     * @param database
+     * @param cls
+     * @param columnName
+     * @param columnValue
+     * @param mapper
+     * @param control may be null
+     * @return List<T>
+     */
+    public List<T> getAllEntriesWhere(Database database, Class<T> cls, String columnName, String columnValue, DataMapper<T> mapper,
+                                      QueryControl control) throws DBException {
         Cursor cursor = null;
         List<T> dataList = new ArrayList<T>();
         String[] params = { String.valueOf(columnValue) };
+        SQLiteDatabase readDatabase = database.acquireReadDatabase();
+        QueryControl previous = QueryControl.enter(control);
         try {
-			cursor = database.getDatabase().query(getTableName(), getProjection(), columnName + " LIKE ?",
-                    params, null,
-                    null, null);
+			cursor = query(readDatabase, columnName + " LIKE ?", params, control);
             if (cursor == null) {
                 return dataList;
             }
@@ -512,18 +618,17 @@ public class AbstractTable<T> extends Table<T> {
                 cursor.close();
                 return dataList;
             }
+            RowBinder<T> binder = getRowBinder(cursor, mapper);
             do  {
-                int columnPosition = 0;
-                T data = cls.newInstance();
-                for (Column column : columns) {
-                    if (column.column_position == 0) {
-                        column.column_position = columnPosition;
-                    }
-                    mapper.read(cursor, column, data);
-                    columnPosition++;
+                if (control != null) {
+                    control.throwIfCanceled();
                 }
+                T data = cls.newInstance();
+                binder.bind(cursor, data);
                 dataList.add(data);
             } while (cursor.moveToNext());
+        } catch (OperationCanceledException e) {
+            throw new QueryCanceledException("Query canceled", e);
         } catch (SQLiteException | InstantiationException | IllegalAccessException e) {
             Logger.error(e.getMessage(), e);
 			throw new DBException(e.getMessage(), e);
@@ -531,6 +636,8 @@ public class AbstractTable<T> extends Table<T> {
 			if (cursor != null) {
 				cursor.close();
 			}
+			database.releaseReadDatabase(readDatabase);
+			QueryControl.exit(previous);
         }
         return dataList;
     }
@@ -546,6 +653,21 @@ public class AbstractTable<T> extends Table<T> {
      */
     public List<T> getAllEntriesWhere(Database database, Class<T> cls, List<ColumnValue> columnValues, DataMapper<T> mapper)
 		throws DBException {
+        return getAllEntriesWhere(database, cls, columnValues, mapper, QueryControl.current());
+    }
+
+    /**
+     * Get all entries with multiple where values
+     * @param database
+     * @param cls
+     * @param columnValues
+     * @param mapper
+     * @param control may be null
+     * @return
+     * @throws DBException
+     */
+    public List<T> getAllEntriesWhere(Database database, Class<T> cls, List<ColumnValue> columnValues, DataMapper<T> mapper,
+                                      QueryControl control) throws DBException {
         Cursor cursor = null;
         List<T> dataList = new ArrayList<T>();
         StringBuilder columnBuilder = new StringBuilder();
@@ -558,10 +680,10 @@ public class AbstractTable<T> extends Table<T> {
                 columnBuilder.append(" AND ");
             }
         }
+        SQLiteDatabase readDatabase = database.acquireReadDatabase();
+        QueryControl previous = QueryControl.enter(control);
         try {
-			cursor = database.getDatabase().query(getTableName(), getProjection(), columnBuilder.toString(),
-                    values, null,
-                    null, null);
+			cursor = query(readDatabase, columnBuilder.toString(), values, control);
             if (cursor == null) {
                 return dataList;
             }
@@ -569,18 +691,17 @@ public class AbstractTable<T> extends Table<T> {
                 cursor.close();
                 return dataList;
             }
+            RowBinder<T> binder = getRowBinder(cursor, mapper);
             do  {
-                int columnPosition = 0;
-                T data = cls.newInstance();
-                for (Column column : columns) {
-                    if (column.column_position == 0) {
-                        column.column_position = columnPosition;
-                    }
-                    mapper.read(cursor, column, data);
-                    columnPosition++;
+                if (control != null) {
+                    control.throwIfCanceled();
                 }
+                T data = cls.newInstance();
+                binder.bind(cursor, data);
                 dataList.add(data);
             } while (cursor.moveToNext());
+        } catch (OperationCanceledException e) {
+            throw new QueryCanceledException("Query canceled", e);
         } catch (SQLiteException | InstantiationException | IllegalAccessException e) {
             Logger.error(e.getMessage(), e);
 			throw new DBException(e.getMessage(), e);
@@ -588,6 +709,8 @@ public class AbstractTable<T> extends Table<T> {
 			if (cursor != null) {
 				cursor.close();
 			}
+			database.releaseReadDatabase(readDatabase);
+			QueryControl.exit(previous);
         }
         return dataList;
     }
@@ -603,12 +726,27 @@ public class AbstractTable<T> extends Table<T> {
      */
     public List<T> getAllEntriesWhere(Database database, String whereClause, String[] whereArgs, Class<T> cls, DataMapper<T> mapper)
 		throws DBException {
+        return getAllEntriesWhere(database, whereClause, whereArgs, cls, mapper, QueryControl.current());
+    }
+
+    /**
+     * Get all entries with the given where clause and args
+     * @param database
+     * @param whereClause
+     * @param whereArgs
+     * @param cls
+     * @param mapper
+     * @param control may be null
+     * @return List<T>
+     */
+    public List<T> getAllEntriesWhere(Database database, String whereClause, String[] whereArgs, Class<T> cls, DataMapper<T> mapper,
+                                      QueryControl control) throws DBException {
         Cursor cursor = null;
         List<T> dataList = new ArrayList<T>();
+        SQLiteDatabase readDatabase = database.acquireReadDatabase();
+        QueryControl previous = QueryControl.enter(control);
         try {
-            cursor = database.getDatabase().query(getTableName(), getProjection(), whereClause,
-                                                  whereArgs, null,
-                                                  null, null);
+            cursor = query(readDatabase, whereClause, whereArgs, control);
             if (cursor == null) {
                 return dataList;
             }
@@ -616,18 +754,17 @@ public class AbstractTable<T> extends Table<T> {
                 cursor.close();
                 return dataList;
             }
+            RowBinder<T> binder = getRowBinder(cursor, mapper);
             do  {
-                int columnPosition = 0;
-                T data = cls.newInstance();
-                for (Column column : columns) {
-                    if (column.column_position == 0) {
-                        column.column_position = columnPosition;
-                    }
-                    mapper.read(cursor, column, data);
-                    columnPosition++;
+                if (control != null) {
+                    control.throwIfCanceled();
                 }
+                T data = cls.newInstance();
+                binder.bind(cursor, data);
                 dataList.add(data);
             } while (cursor.moveToNext());
+        } catch (OperationCanceledException e) {
+            throw new QueryCanceledException("Query canceled", e);
         } catch (SQLiteException | InstantiationException | IllegalAccessException e) {
             Logger.error(e.getMessage(), e);
 			throw new DBException(e.getMessage(), e);
@@ -635,10 +772,77 @@ public class AbstractTable<T> extends Table<T> {
             if (cursor != null) {
                 cursor.close();
             }
+            database.releaseReadDatabase(readDatabase);
+            QueryControl.exit(previous);
         }
         return dataList;
     }
 
+    /**
+     * Visit every entry that matches the where clause without building a list. The given item is
+     * reused for every row.
+     * @param database
+     * @param whereClause null for all entries
+     * @param whereArgs
+     * @param item item to read each row into
+     * @param mapper
+     * @param visitor
+     * @return number of rows visited
+     */
+    public int forEachEntryWhere(Database database, String whereClause, String[] whereArgs, T item, DataMapper<T> mapper,
+                                 RowVisitor<? super T> visitor) throws DBException {
+        return forEachEntryWhere(database, whereClause, whereArgs, item, mapper, visitor, QueryControl.current());
+    }
+
+    /**
+     * Visit every entry that matches the where clause without building a list. The given item is
+     * reused for every row.
+     * @param database
+     * @param whereClause null for all entries
+     * @param whereArgs
+     * @param item item to read each row into
+     * @param mapper
+     * @param visitor
+     * @param control may be null
+     * @return number of rows visited
+     */
+    public int forEachEntryWhere(Database database, String whereClause, String[] whereArgs, T item, DataMapper<T> mapper,
+                                 RowVisitor<? super T> visitor, QueryControl control) throws DBException {
+        Cursor cursor = null;
+        int count = 0;
+        SQLiteDatabase readDatabase = database.acquireReadDatabase();
+        QueryControl previous = QueryControl.enter(control);
+        try {
+            cursor = query(readDatabase, whereClause, whereArgs, control);
+            if (cursor == null || !cursor.moveToFirst()) {
+                return count;
+            }
+            RowBinder<T> binder = getRowBinder(cursor, mapper);
+            do  {
+                if (control != null) {
+                    control.throwIfCanceled();
+                }
+                binder.bind(cursor, item);
+                count++;
+                if (!visitor.visit(item)) {
+                    break;
+                }
+            } while (cursor.moveToNext());
+        } catch (OperationCanceledException e) {
+            throw new QueryCanceledException("Query canceled", e);
+        } catch (SQLiteException e) {
+            Logger.error(e.getMessage(), e);
+			throw new DBException(e.getMessage(), e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            database.releaseReadDatabase(readDatabase);
+            QueryControl.exit(previous);
+        }
+        return count;
+    }
+
     /**
      * Return a cursor with all entries
      * @param database
@@ -648,6 +852,7 @@ public class AbstractTable<T> extends Table<T> {
     public Cursor getAllEntries(Database database) throws DBException {
         Cursor cursor;
         try {
+            // The cursor is read after this returns, so it can't use a pooled connection
             cursor = database.getDatabase().query(getTableName(), getProjection(), null, null, null,
                     null, null);
         } catch (SQLiteException e) {
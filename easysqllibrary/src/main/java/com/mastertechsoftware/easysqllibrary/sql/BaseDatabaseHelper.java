@@ -7,6 +7,7 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.os.CancellationSignal;
 import android.os.OperationCanceledException;
 
@@ -18,9 +19,15 @@ import com.mastertechsoftware.logging.Logger;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -58,13 +65,32 @@ public class BaseDatabaseHelper extends SQLiteOpenHelper {
 	protected boolean debugging = false;
 
 	// Lock used to serialize access to this API.
-	protected static final ReentrantLock mLock = new ReentrantLock(); // Static will mean all threads use the same lock
-	protected static int openCount = 0;
+	// One lock per database file, so independent databases don't block each other
+	protected final ReentrantLock mLock;
+	// Held by the thread that owns the transaction. Taken before the SQLite transaction begins, so every
+	// writer waits here rather than on the connection while holding other locks
+	protected final ReentrantLock writerLock;
+	protected final AtomicInteger openCount = new AtomicInteger();
+	private static final ConcurrentHashMap<String, ReentrantLock> databaseLocks = new ConcurrentHashMap<String, ReentrantLock>();
+	private static final ConcurrentHashMap<String, ReentrantLock> writerLocks = new ConcurrentHashMap<String, ReentrantLock>();
 	// The ExecutorService we use to run requests.
 	protected final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
     protected UpgradeStrategy upgradeStrategy;
     protected boolean upgradeCheck = false;
     protected CountDownLatch upgradeLatch;
+	// How long to keep the database open after the last endOpen. 0 closes right away, -1 never closes
+	protected volatile long keepAliveMillis = 0;
+	protected volatile boolean writeAheadLogging = false;
+	// Read only connections used by the read paths when write-ahead logging is on
+	protected int readPoolSize = 0;
+	protected ReadConnectionPool readPool;
+	protected ScheduledFuture<?> idleClose;
+	private final Object idleLock = new Object();
+	// Transaction this thread started. Nested startTransaction calls join it
+	protected final ThreadLocal<TransactionState> transactionState = new ThreadLocal<TransactionState>();
+	// Number of reads running on this thread
+	protected final ThreadLocal<Integer> readDepth = new ThreadLocal<Integer>();
+	private static ScheduledExecutorService idleExecutor;
 
 	/**
 	 * Create a helper object to create, open, and/or manage a database. This method always returns very quickly. The database is not
@@ -77,8 +103,35 @@ public class BaseDatabaseHelper extends SQLiteOpenHelper {
 		this.context = context;
 		this.mainTableName = mainTableName;
 		this.version = version;
+		mLock = getDatabaseLock(databaseName);
+		writerLock = getLock(writerLocks, databaseName);
     }
 
+	/**
+	 * Get the lock shared by all helpers for the given database file
+	 * @param databaseName
+	 * @return ReentrantLock
+	 */
+	protected static ReentrantLock getDatabaseLock(String databaseName) {
+		return getLock(databaseLocks, databaseName);
+	}
+
+	private static ReentrantLock getLock(ConcurrentHashMap<String, ReentrantLock> locks, String databaseName) {
+		if (databaseName == null) {
+			// In memory database. Nothing to share with
+			return new ReentrantLock();
+		}
+		ReentrantLock lock = locks.get(databaseName);
+		if (lock == null) {
+			ReentrantLock newLock = new ReentrantLock();
+			lock = locks.putIfAbsent(databaseName, newLock);
+			if (lock == null) {
+				lock = newLock;
+			}
+		}
+		return lock;
+	}
+
 
    /**
      * Check to see if we need to upgrade. Getting the database will start the upgrade process
@@ -277,6 +330,15 @@ public class BaseDatabaseHelper extends SQLiteOpenHelper {
 		Logger.debug(debugging,"setupMetaDatabase");
 		Cursor cursor = null;
         try {
+            // Fast path: the meta table was already set up for this exact schema
+            if (metaUpToDate()) {
+                if (metaDatabase == null) {
+                    metaDatabase = new MetaDatabase(sqLiteDatabase);
+                } else {
+                    metaDatabase.setDatabase(sqLiteDatabase);
+                }
+                return;
+            }
 			cursor = sqLiteDatabase.rawQuery("SELECT name FROM sqlite_master WHERE type='table' AND name='meta'", null);
             if (metaDatabase == null) {
                 metaDatabase = new MetaDatabase(sqLiteDatabase);
@@ -308,6 +370,7 @@ public class BaseDatabaseHelper extends SQLiteOpenHelper {
             if (!metaDatabase.databaseExists(version, getDatabaseName())) {
                 metaDatabase.addDatabaseEntry(version, getDatabaseName(), localDatabase.getCreateDatabaseString());
             }
+            writeSchemaFingerprint();
         } catch (Exception e) {
             Logger.error( "Problems Adding Meta data", e);
             return;
@@ -316,6 +379,41 @@ public class BaseDatabaseHelper extends SQLiteOpenHelper {
         }
     }
 
+    /**
+     * Check the schema fingerprint stored in the database header against the current schema
+     * @return true if the meta table is already set up for this schema
+     */
+    protected boolean metaUpToDate() {
+        if (localDatabase == null) {
+            return false;
+        }
+        SQLiteStatement statement = null;
+        try {
+            statement = sqLiteDatabase.compileStatement("PRAGMA application_id");
+            return statement.simpleQueryForLong() == localDatabase.getSchemaFingerprint();
+        } catch (SQLiteException e) {
+            // Older SQLite without application_id. Use the slow path
+            Logger.debug(debugging, "metaUpToDate: " + e.getMessage());
+            return false;
+        } finally {
+            if (statement != null) {
+                statement.close();
+            }
+        }
+    }
+
+    /**
+     * Store the schema fingerprint in the database header. application_id is used because
+     * user_version holds the version for SQLiteOpenHelper
+     */
+    protected void writeSchemaFingerprint() {
+        try {
+            sqLiteDatabase.execSQL("PRAGMA application_id = " + localDatabase.getSchemaFingerprint());
+        } catch (SQLiteException e) {
+            Logger.debug(debugging, "writeSchemaFingerprint: " + e.getMessage());
+        }
+    }
+
     /**
 	 * Is the database open
 	 *
@@ -388,6 +486,9 @@ public class BaseDatabaseHelper extends SQLiteOpenHelper {
 			if (sqLiteDatabase != null && state != STATE.INITIALIZING) {
 				super.close();
 			}
+			if (readPool != null) {
+				readPool.close();
+			}
 		} finally {
             if (sqLiteDatabase != null && state != STATE.INITIALIZING) {
                 sqLiteDatabase = null;
@@ -445,22 +546,112 @@ public class BaseDatabaseHelper extends SQLiteOpenHelper {
 
 	/**
 	 * Start a transaction by incrementing the open count and opening the db if necessary Make multiple db class by calling this method
-	 * yourself before other methods
+	 * yourself before other methods. If this thread is already in a transaction, the call joins it and nothing
+	 * is committed until the outer transaction ends. The outermost call waits for the database's writer lock,
+	 * so only one thread writes at a time
+	 * @throws DBException if the transaction could not be started. Don't call endTransaction then
 	 */
 	public void startTransaction() throws DBException {
 		Logger.debug(debugging,"startTransaction");
 		beginOpen();
-		if (sqLiteDatabase != null) {
-			try {
-				sqLiteDatabase.beginTransaction();
-			} catch (SQLiteException e) {
-				Logger.error("startTransaction: problems beginning Transaction", e);
+		TransactionState transaction = transactionState.get();
+		if (transaction != null) {
+			transaction.depth++;
+			return;
+		}
+		writerLock.lock();
+		try {
+			if (sqLiteDatabase == null) {
 				printDatabaseState();
+				throw new DBException("startTransaction: sqLiteDatabase is null");
 			}
-		} else {
-			Logger.error("startTransaction: sqLiteDatabase is null");
+			sqLiteDatabase.beginTransaction();
+			transactionState.set(new TransactionState());
+		} catch (SQLiteException e) {
+			Logger.error("startTransaction: problems beginning Transaction", e);
 			printDatabaseState();
+			writerLock.unlock();
+			endOpen();
+			throw new DBException("startTransaction: problems beginning Transaction", e);
+		} catch (DBException e) {
+			writerLock.unlock();
+			endOpen();
+			throw e;
+		}
+	}
+
+	/**
+	 * Start a savepoint inside this thread's transaction. Work after it can be rolled back on its own
+	 * with endSavepoint(name, false) while the rest of the transaction carries on
+	 * @return savepoint name to pass to endSavepoint
+	 * @throws DBException if there is no transaction or the savepoint could not be made
+	 */
+	public String startSavepoint() throws DBException {
+		TransactionState transaction = transactionState.get();
+		if (transaction == null || sqLiteDatabase == null) {
+			throw new DBException("startSavepoint: no transaction started on this thread");
 		}
+		String name = "sp" + (++transaction.savepoints);
+		executeSavepointSQL("SAVEPOINT " + name);
+		transaction.failedBeforeSavepoint.add(transaction.failed);
+		transaction.actionsBeforeSavepoint.add(transaction.rollbackActions.size());
+		transaction.failed = false;
+		return name;
+	}
+
+	/**
+	 * End a savepoint from startSavepoint. It is also rolled back if a call that joined the transaction
+	 * failed after the savepoint started. The rest of the transaction is not affected either way
+	 * @param name
+	 * @param successful false to roll back everything since the savepoint
+	 * @return true if the savepoint's changes were kept
+	 * @throws DBException
+	 */
+	public boolean endSavepoint(String name, boolean successful) throws DBException {
+		TransactionState transaction = transactionState.get();
+		if (transaction == null || transaction.failedBeforeSavepoint.isEmpty()) {
+			throw new DBException("endSavepoint: no savepoint started on this thread");
+		}
+		successful = successful && !transaction.failed;
+		transaction.failed = transaction.failedBeforeSavepoint.remove(transaction.failedBeforeSavepoint.size() - 1);
+		int actions = transaction.actionsBeforeSavepoint.remove(transaction.actionsBeforeSavepoint.size() - 1);
+		if (!successful) {
+			transaction.rollBack(actions);
+			// The leading comment stops older Android versions from treating ROLLBACK TO as the end of the
+			// whole transaction
+			executeSavepointSQL("/* savepoint */ ROLLBACK TO " + name);
+		}
+		executeSavepointSQL("RELEASE " + name);
+		return successful;
+	}
+
+	private void executeSavepointSQL(String sql) throws DBException {
+		try {
+			sqLiteDatabase.execSQL(sql);
+		} catch (SQLiteException e) {
+			Logger.error("Problems executing " + sql, e);
+			throw new DBException("Problems executing " + sql, e);
+		}
+	}
+
+	/**
+	 * Run the action if this thread's transaction, or the savepoint the call is in, is rolled back.
+	 * Use it to undo in memory state that assumed the write was kept. Does nothing outside a transaction
+	 * @param action
+	 */
+	public void onRollback(Runnable action) {
+		TransactionState transaction = transactionState.get();
+		if (transaction != null) {
+			transaction.rollbackActions.add(action);
+		}
+	}
+
+	/**
+	 * Return true if this thread is inside a transaction started with startTransaction
+	 * @return true if in a transaction
+	 */
+	public boolean isInTransaction() {
+		return transactionState.get() != null;
 	}
 
 	/**
@@ -468,41 +659,248 @@ public class BaseDatabaseHelper extends SQLiteOpenHelper {
 	 * @throws DBException
 	 */
 	public void beginOpen() throws DBException {
-		openCount++;
+		openCount.incrementAndGet();
+		cancelIdleClose();
 		open();
 	}
 
+	/**
+	 * Open the database for a read. Writes made by this thread until endRead (a visitor writing back)
+	 * are not queued, see isReading()
+	 * @throws DBException if the database could not be opened. Don't call endRead then
+	 */
+	public void beginRead() throws DBException {
+		try {
+			beginOpen();
+		} catch (DBException e) {
+			endOpen();
+			throw e;
+		}
+		Integer depth = readDepth.get();
+		readDepth.set(depth == null ? 1 : depth + 1);
+	}
+
+	/**
+	 * End a read started with beginRead
+	 */
+	public void endRead() {
+		Integer depth = readDepth.get();
+		if (depth == null || depth <= 1) {
+			readDepth.remove();
+		} else {
+			readDepth.set(depth - 1);
+		}
+		endOpen();
+	}
+
+	/**
+	 * Return true if this thread is inside a read started with beginRead
+	 * @return true if reading
+	 */
+	public boolean isReading() {
+		return readDepth.get() != null;
+	}
+
 	/**
 	 * End a set of transactions be decreasing the open count and closing the db if necessary
+	 * @return false if the transaction was rolled back. See endTransaction(boolean)
 	 */
-	public void endTransaction() {
+	public boolean endTransaction() {
+		return endTransaction(true);
+	}
+
+	/**
+	 * End a transaction. The outermost transaction commits only if it and every joined transaction
+	 * ended successfully, otherwise everything is rolled back
+	 * @param successful false to roll back
+	 * @return true if the outermost transaction committed. For a joined transaction, true if nothing has
+	 * failed so far. False if it was (or will be) rolled back
+	 */
+	public boolean endTransaction(boolean successful) {
 		Logger.debug(debugging,"endTransaction");
-		if (sqLiteDatabase != null) {
-			try {
-				sqLiteDatabase.setTransactionSuccessful();
+		TransactionState transaction = transactionState.get();
+		if (transaction == null) {
+			Logger.error("endTransaction: no transaction started on this thread");
+			endOpen();
+			return false;
+		}
+		if (!successful) {
+			transaction.failed = true;
+		}
+		if (transaction.depth > 0) {
+			// Joined an outer transaction
+			transaction.depth--;
+			endOpen();
+			return !transaction.failed;
+		}
+		transactionState.remove();
+		boolean committed = false;
+		try {
+			if (sqLiteDatabase != null) {
+				if (!transaction.failed) {
+					sqLiteDatabase.setTransactionSuccessful();
+				}
 				sqLiteDatabase.endTransaction();
-			} catch (SQLiteException e) {
-				Logger.error("endTransaction: problems ending Transaction", e);
+				committed = !transaction.failed;
+			} else {
+				Logger.error("endTransaction: sqLiteDatabase is null");
 				printDatabaseState();
 			}
-		} else {
-			Logger.error("endTransaction: sqLiteDatabase is null");
+		} catch (SQLiteException e) {
+			Logger.error("endTransaction: problems ending Transaction", e);
 			printDatabaseState();
+		} finally {
+			writerLock.unlock();
+		}
+		if (!committed) {
+			transaction.rollBack(0);
 		}
 		endOpen();
+		return committed;
 	}
 
 	/**
 	 * Close the database if needed. Decrement open count
 	 */
 	public void endOpen() {
-		openCount--;
-		openCount = Math.max(0, openCount); // Make sure we don't go below 0
-		if (openCount == 0) {
+		int count;
+		do {
+			count = openCount.get();
+		} while (count > 0 && !openCount.compareAndSet(count, count - 1)); // Make sure we don't go below 0
+		if (count <= 1) {
+			if (keepAliveMillis == 0) {
+				// Another thread may have opened it since the decrement. Recheck under the lock
+				closeIfIdle();
+			} else if (keepAliveMillis > 0) {
+				scheduleIdleClose();
+			}
+		}
+	}
+
+	/**
+	 * Keep the database open between calls and close it after it has been idle for the given time.
+	 * This saves reopening the file and warming the page cache on every call.
+	 * @param idleTimeout 0 to close as soon as the open count reaches 0 (the default), -1 to never close
+	 * @param unit
+	 */
+	public void setKeepAlive(long idleTimeout, TimeUnit unit) {
+		keepAliveMillis = idleTimeout < 0 ? -1 : unit.toMillis(idleTimeout);
+		if (keepAliveMillis == 0) {
+			cancelIdleClose();
+			closeIfIdle();
+		}
+	}
+
+	/**
+	 * Turn write-ahead logging on or off. With it on, reads run in parallel with a write and see the
+	 * last committed data. Best set before the database is first opened
+	 * @param enabled
+	 */
+	public void setWriteAheadLogging(boolean enabled) {
+		writeAheadLogging = enabled;
+		setWriteAheadLoggingEnabled(enabled);
+		updateReadPool();
+	}
+
+	/**
+	 * Set the number of read only connections used for queries. Only used with write-ahead logging,
+	 * where queries on different threads can then run in parallel. Calls that return a Cursor always use
+	 * the main connection, since the cursor is read after the call returns
+	 * @param size 0 to run all queries on the main connection
+	 */
+	public synchronized void setReadPoolSize(int size) {
+		readPoolSize = Math.max(0, size);
+		if (readPool != null) {
+			readPool.close();
+			readPool = null;
+		}
+		updateReadPool();
+	}
+
+	/**
+	 * Return the read connection pool, for its wait and utilization metrics
+	 * @return ReadConnectionPool or null if reads use the main connection
+	 */
+	public ReadConnectionPool getReadPool() {
+		return readPool;
+	}
+
+	/**
+	 * Create the read pool if needed and hand it to the local database if write-ahead logging is on
+	 */
+	protected synchronized void updateReadPool() {
+		if (readPool == null && readPoolSize > 0) {
+			readPool = new ReadConnectionPool(context.getDatabasePath(getDatabaseName()).getPath(), readPoolSize);
+		}
+		if (localDatabase != null) {
+			localDatabase.setReadPool(writeAheadLogging ? readPool : null);
+		}
+	}
+
+	/**
+	 * Return true if write-ahead logging is on
+	 * @return writeAheadLogging
+	 */
+	public boolean isWriteAheadLogging() {
+		return writeAheadLogging;
+	}
+
+	/**
+	 * Schedule closing the database once it has been idle for the keep alive time
+	 */
+	protected void scheduleIdleClose() {
+		synchronized (idleLock) {
+			cancelIdleClose();
+			idleClose = getIdleExecutor().schedule(new Runnable() {
+				@Override
+				public void run() {
+					closeIfIdle();
+				}
+			}, keepAliveMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Cancel any pending idle close
+	 */
+	protected void cancelIdleClose() {
+		synchronized (idleLock) {
+			if (idleClose != null) {
+				idleClose.cancel(false);
+				idleClose = null;
+			}
+		}
+	}
+
+	/**
+	 * Close the database if nobody has it open. beginOpen counts before it opens, so a thread that
+	 * opens after the check waits in open() and reopens the database
+	 */
+	protected synchronized void closeIfIdle() {
+		if (openCount.get() == 0) {
+			Logger.debug(debugging, "closeIfIdle");
 			close();
 		}
 	}
 
+	/**
+	 * One daemon thread handles idle closes for all databases
+	 * @return ScheduledExecutorService
+	 */
+	private static synchronized ScheduledExecutorService getIdleExecutor() {
+		if (idleExecutor == null) {
+			idleExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "BaseDatabaseHelper-idle");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return idleExecutor;
+	}
+
 	/**
 	 * Create our database objects with the current SQLite db. You will override this to create the database object with your own.
 	 */
@@ -510,9 +908,11 @@ public class BaseDatabaseHelper extends SQLiteOpenHelper {
 		Logger.debug(debugging,"createLocalDB");
 		if (localDatabase == null) {
 			localDatabase = new Database(sqLiteDatabase);
+			localDatabase.setDatabaseHelper(this);
 		} else {
 			localDatabase.setDatabase(sqLiteDatabase);
 		}
+		updateReadPool();
 	}
 
     /**
@@ -539,6 +939,7 @@ public class BaseDatabaseHelper extends SQLiteOpenHelper {
 	 */
 	public void setLocalDatabase(Database localDatabase) {
 		this.localDatabase = localDatabase;
+		localDatabase.setDatabaseHelper(this);
 	}
 
     /**
@@ -984,18 +1385,22 @@ public class BaseDatabaseHelper extends SQLiteOpenHelper {
 	 * @return result
 	 */
 	public Object insertEntry(TableEntry table, Object data) {
-		// Lock it!
-		mLock.lock();
+		boolean started = false;
+		boolean successful = false;
 		try {
 			startTransaction();
-			return table.getTable().insertEntry(localDatabase, data);
+			started = true;
+			Object result = table.getTable().insertEntry(localDatabase, data);
+			successful = true;
+			return result;
 		} catch (DBException e) {
 			Logger.error( "Problems inserting entry for table " + table, e);
 			printDatabaseState();
 			return null;
 		} finally {
-			endTransaction();
-			mLock.unlock();
+			if (started) {
+				endTransaction(successful);
+			}
 		}
 	}
 
@@ -1005,18 +1410,22 @@ public class BaseDatabaseHelper extends SQLiteOpenHelper {
 	 * @return id
 	 */
 	public long insertEntry(TableEntry table, List<String> data) {
-		// Lock it!
-		mLock.lock();
+		boolean started = false;
+		boolean successful = false;
 		try {
 			startTransaction();
-			return table.getTable().insertEntry(localDatabase, data);
+			started = true;
+			long id = table.getTable().insertEntry(localDatabase, data);
+			successful = id != -1;
+			return id;
 		} catch (DBException e) {
 			Logger.error( "Problems inserting entry for table " + table, e);
 			printDatabaseState();
 			return -1;
 		} finally {
-			endTransaction();
-			mLock.unlock();
+			if (started) {
+				endTransaction(successful);
+			}
 		}
 	}
 
@@ -1028,35 +1437,42 @@ public class BaseDatabaseHelper extends SQLiteOpenHelper {
      * @return id
      */
     public long insertEntry(AbstractTable table, Object data, DataMapper mapper) {
-        // Lock it!
-        mLock.lock();
+        boolean started = false;
+        boolean successful = false;
         try {
             startTransaction();
-            return table.insertEntry(localDatabase, data, mapper);
+            started = true;
+            long id = table.insertEntry(localDatabase, data, mapper);
+            successful = id != -1;
+            return id;
         } catch (DBException e) {
             Logger.error( "Problems inserting entry for table " + table, e);
 			printDatabaseState();
             return -1;
         } finally {
-            endTransaction();
-            mLock.unlock();
+            if (started) {
+                endTransaction(successful);
+            }
         }
     }
 	/**
 	 * Delete a table item.
 	 */
 	public void deleteEntry(TableEntry table, Object data) {
-		// Lock it!
-		mLock.lock();
+		boolean started = false;
+		boolean successful = false;
 		try {
 			startTransaction();
+			started = true;
 			table.getTable().deleteEntry(localDatabase, data);
+			successful = true;
 		} catch (DBException e) {
 			Logger.error( "Problems deleting entry for table " + table, e);
 			printDatabaseState();
 		} finally {
-			endTransaction();
-			mLock.unlock();
+			if (started) {
+				endTransaction(successful);
+			}
 		}
 	}
 
@@ -1064,17 +1480,20 @@ public class BaseDatabaseHelper extends SQLiteOpenHelper {
 	 * Delete a table item with where items
 	 */
 	public void deleteEntryWhere(TableEntry table, String whereClause, String[] whereArgs) {
-		// Lock it!
-		mLock.lock();
+		boolean started = false;
+		boolean successful = false;
 		try {
 			startTransaction();
+			started = true;
 			table.getTable().deleteEntryWhere(localDatabase, whereClause, whereArgs);
+			successful = true;
 		} catch (DBException e) {
 			Logger.error( "Problems deleting entry for table " + table, e);
 			printDatabaseState();
 		} finally {
-			endTransaction();
-			mLock.unlock();
+			if (started) {
+				endTransaction(successful);
+			}
 		}
 	}
 
@@ -1082,17 +1501,20 @@ public class BaseDatabaseHelper extends SQLiteOpenHelper {
 	 * Delete all items in this table
 	 */
 	public void deleteAllEntries(TableEntry table) {
-		// Lock it!
-		mLock.lock();
+		boolean started = false;
+		boolean successful = false;
 		try {
 			startTransaction();
+			started = true;
 			table.getTable().deleteAllEntries(localDatabase);
+			successful = true;
 		} catch (DBException e) {
 			Logger.error( "Problems deleting entry for table " + table, e);
 			printDatabaseState();
 		} finally {
-			endTransaction();
-			mLock.unlock();
+			if (started) {
+				endTransaction(successful);
+			}
 		}
 	}
 
@@ -1155,18 +1577,22 @@ public class BaseDatabaseHelper extends SQLiteOpenHelper {
 	 * @return result
 	 */
 	public Object updateEntry(TableEntry table, Object data, Object key) {
-		// Lock it!
-		mLock.lock();
+		boolean started = false;
+		boolean successful = false;
 		try {
 			startTransaction();
-			return table.getTable().updateEntry(localDatabase, data, key);
+			started = true;
+			Object result = table.getTable().updateEntry(localDatabase, data, key);
+			successful = true;
+			return result;
 		} catch (DBException e) {
 			Logger.error( "Problems updating entry for table " + table, e);
 			printDatabaseState();
 			return null;
 		} finally {
-			endTransaction();
-			mLock.unlock();
+			if (started) {
+				endTransaction(successful);
+			}
 		}
 	}
 
@@ -1176,18 +1602,22 @@ public class BaseDatabaseHelper extends SQLiteOpenHelper {
 	 * @return # of items updated
 	 */
 	public long updateEntry(TableEntry table, List<String> data, Object key) {
-		// Lock it!
-		mLock.lock();
+		boolean started = false;
+		boolean successful = false;
 		try {
 			startTransaction();
-			return table.getTable().updateEntry(localDatabase, data, key);
+			started = true;
+			long result = table.getTable().updateEntry(localDatabase, data, key);
+			successful = true;
+			return result;
 		} catch (DBException e) {
 			Logger.error( "Problems updating entry for table " + table, e);
 			printDatabaseState();
 			return -1;
 		} finally {
-			endTransaction();
-			mLock.unlock();
+			if (started) {
+				endTransaction(successful);
+			}
 		}
 	}
 
@@ -1197,18 +1627,22 @@ public class BaseDatabaseHelper extends SQLiteOpenHelper {
 	 * @return # of rows updated
 	 */
 	public long updateEntryWhere(TableEntry table, ContentValues cv, String whereClause, String[] whereArgs) {
-		// Lock it!
-		mLock.lock();
+		boolean started = false;
+		boolean successful = false;
 		try {
 			startTransaction();
-			return table.getTable().updateEntryWhere(localDatabase, cv, whereClause, whereArgs);
+			started = true;
+			long result = table.getTable().updateEntryWhere(localDatabase, cv, whereClause, whereArgs);
+			successful = true;
+			return result;
 		} catch (DBException e) {
 			Logger.error( "Problems updating entry for table " + table, e);
 			printDatabaseState();
 			return -1;
 		} finally {
-			endTransaction();
-			mLock.unlock();
+			if (started) {
+				endTransaction(successful);
+			}
 		}
 	}
 
@@ -1327,4 +1761,35 @@ public class BaseDatabaseHelper extends SQLiteOpenHelper {
         }
         return oldDataTables;
     }
+
+	/**
+	 * The transaction a thread is in
+	 */
+	protected static class TransactionState {
+		// Number of joined transactions still open
+		int depth = 0;
+		// Set when any part ends unsuccessfully. The whole transaction is then rolled back
+		boolean failed = false;
+		// Used to name savepoints
+		int savepoints = 0;
+		// The failed flag when each open savepoint started, innermost last
+		final List<Boolean> failedBeforeSavepoint = new ArrayList<Boolean>();
+		// Run if the work they belong to is rolled back
+		final List<Runnable> rollbackActions = new ArrayList<Runnable>();
+		// Size of rollbackActions when each open savepoint started, innermost last
+		final List<Integer> actionsBeforeSavepoint = new ArrayList<Integer>();
+
+		/**
+		 * Run and remove the rollback actions added after the given position, newest first
+		 */
+		void rollBack(int from) {
+			for (int i = rollbackActions.size() - 1; i >= from; i--) {
+				try {
+					rollbackActions.remove(i).run();
+				} catch (RuntimeException e) {
+					Logger.error("Problems running rollback action", e);
+				}
+			}
+		}
+	}
 }
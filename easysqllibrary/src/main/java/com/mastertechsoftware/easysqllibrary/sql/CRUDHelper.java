@@ -7,13 +7,13 @@ import android.os.CancellationSignal;
 import com.mastertechsoftware.logging.Logger;
 
 import java.util.List;
-import java.util.concurrent.locks.ReentrantLock;
 /**
- * This is a helper class that will do CRUD (Create, read, update, delete) operations
+ * This is a helper class that will do CRUD (Create, read, update, delete) operations.
+ * Writes run in a transaction, which holds the database's writer lock, so writes to any table are
+ * serialized without a lock per table. Reads take no lock. SQLite keeps them consistent: without
+ * write-ahead logging they wait for the connection, with it they read the last commit
  */
 public class CRUDHelper<T extends ReflectTableInterface> {
-	// Lock used to serialize access to this API.
-	protected final ReentrantLock mLock = new ReentrantLock();
 	protected ReflectTable<T> table;
 	protected Database database;
 	protected BaseDatabaseHelper databaseHelper;
@@ -57,22 +57,116 @@ public class CRUDHelper<T extends ReflectTableInterface> {
 	 * @return id
 	 */
 	public long addItem(T item) {
-		// Lock it!
-		mLock.lock();
+		boolean started = false;
+		boolean successful = false;
 		try {
 			databaseHelper.startTransaction();
-			long id = table.insertEntry(database, item, table.getMapper());
+			started = true;
+			long id = table.insertEntry(database, item, table.getDataMapper());
 			item.setId((int) id);
+			successful = id != -1;
 			return id;
 		} catch (DBException e) {
 			Logger.error(this, "addItem:Problems starting transaction: " + e.getMessage());
 		} finally {
-			databaseHelper.endTransaction();
-			mLock.unlock();
+			if (started) {
+				databaseHelper.endTransaction(successful);
+			}
+		}
+		return -1;
+	}
+
+
+	/**
+	 * Add a list of items in one transaction. The insert statement is compiled once for the list
+	 * and the new ids are set on the items
+	 * @param items
+	 * @return new ids in list order (-1 for items that failed) or null on error
+	 */
+	public long[] addItems(List<? extends T> items) {
+		boolean started = false;
+		boolean successful = false;
+		try {
+			databaseHelper.startTransaction();
+			started = true;
+			long[] ids = table.insertEntries(database, items, table.getDataMapper());
+			for (int i = 0; i < ids.length; i++) {
+				if (ids[i] != -1) {
+					items.get(i).setId((int) ids[i]);
+				}
+			}
+			successful = true;
+			return ids;
+		} catch (DBException e) {
+			Logger.error(this, "addItems:Problems adding items: " + e.getMessage());
+		} finally {
+			if (started) {
+				// Nothing is kept if the ids couldn't be returned
+				databaseHelper.endTransaction(successful);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Insert the item, or update the row with the same values in the conflict columns. The id is set
+	 * on the item
+	 * @param item
+	 * @param conflictColumns null or empty uses the unique columns, or the id if there are none
+	 * @return id of the inserted or updated row. -1 on error
+	 */
+	public long upsert(T item, String... conflictColumns) {
+		boolean started = false;
+		boolean successful = false;
+		try {
+			databaseHelper.startTransaction();
+			started = true;
+			long id = table.upsertEntry(database, item, conflictColumns, table.getDataMapper());
+			if (id != -1) {
+				item.setId((int) id);
+			}
+			successful = id != -1;
+			return id;
+		} catch (DBException e) {
+			Logger.error(this, "upsert:Problems upserting item: " + e.getMessage());
+		} finally {
+			if (started) {
+				databaseHelper.endTransaction(successful);
+			}
 		}
 		return -1;
 	}
 
+	/**
+	 * Upsert a list of items in one transaction. The ids are set on the items
+	 * @param items
+	 * @param conflictColumns null or empty uses the unique columns, or the id if there are none
+	 * @return ids in list order (-1 for items that failed) or null on error. Nothing is written on error
+	 */
+	public long[] upsertAll(List<? extends T> items, String... conflictColumns) {
+		boolean started = false;
+		boolean successful = false;
+		try {
+			databaseHelper.startTransaction();
+			started = true;
+			long[] ids = table.upsertEntries(database, items, conflictColumns, table.getDataMapper());
+			for (int i = 0; i < ids.length; i++) {
+				if (ids[i] != -1) {
+					items.get(i).setId((int) ids[i]);
+				}
+			}
+			successful = true;
+			return ids;
+		} catch (DBException e) {
+			Logger.error(this, "upsertAll:Problems upserting items: " + e.getMessage());
+		} finally {
+			if (started) {
+				// Nothing is kept if the ids couldn't be returned
+				databaseHelper.endTransaction(successful);
+			}
+		}
+		return null;
+	}
 
 	/**
 	 * Get an item with the given id
@@ -81,16 +175,28 @@ public class CRUDHelper<T extends ReflectTableInterface> {
 	 * @return Object
 	 */
 	public T getItem(long id, T item) {
-		// Lock it!
-		mLock.lock();
+		return getItem(id, item, null);
+	}
+
+	/**
+	 * Get an item with the given id
+	 * @param id
+	 * @param item
+	 * @param control may be null. Cancelling it stops the read and returns null
+	 * @return Object
+	 */
+	public T getItem(long id, T item, QueryControl control) {
+		boolean started = false;
 		try {
-			databaseHelper.beginOpen();
-			return table.getEntry(database, id, item, table.getMapper());
+			databaseHelper.beginRead();
+			started = true;
+			return table.getEntry(database, id, item, table.getDataMapper(), control);
 		} catch (DBException e) {
 			Logger.error(this, "getItem:Problems starting transaction: " + e.getMessage() );
 		} finally {
-			databaseHelper.endOpen();
-			mLock.unlock();
+			if (started) {
+				databaseHelper.endRead();
+			}
 		}
 		return null;
 	}
@@ -100,20 +206,70 @@ public class CRUDHelper<T extends ReflectTableInterface> {
 	 * @return List<T>
 	 */
 	public List<? extends T> getItems(Class<? extends T> classItem) {
-		// Lock it!
-		mLock.lock();
+		return getItems(classItem, null);
+	}
+
+	/**
+	 * Get the list of all items
+	 * @param control may be null. Cancelling it stops the read and returns null
+	 * @return List<T>
+	 */
+	public List<? extends T> getItems(Class<? extends T> classItem, QueryControl control) {
+		boolean started = false;
 		try {
-			databaseHelper.beginOpen();
-			return table.getAllEntries(database, classItem, table.getMapper());
+			databaseHelper.beginRead();
+			started = true;
+			return table.getAllEntries(database, classItem, table.getDataMapper(), control);
 		} catch (DBException e) {
 			Logger.error(this, "getItems:Problems getting entries: " + e.getMessage());
 		} finally {
-			databaseHelper.endOpen();
-			mLock.unlock();
+			if (started) {
+				databaseHelper.endRead();
+			}
 		}
 		return null;
 	}
 
+	/**
+	 * Visit all items that match the where clause. One instance of classItem is created and reused
+	 * for every row, so scans don't create garbage per row.
+	 * @param classItem
+	 * @param whereClause null for all items
+	 * @param whereArgs
+	 * @param visitor
+	 * @return number of items visited or -1 on error
+	 */
+	public int forEach(Class<? extends T> classItem, String whereClause, String[] whereArgs, RowVisitor<? super T> visitor) {
+		return forEach(classItem, whereClause, whereArgs, visitor, null);
+	}
+
+	/**
+	 * Visit all items that match the where clause. One instance of classItem is created and reused
+	 * for every row, so scans don't create garbage per row.
+	 * @param classItem
+	 * @param whereClause null for all items
+	 * @param whereArgs
+	 * @param visitor
+	 * @param control may be null. Cancelling it stops the read and returns -1
+	 * @return number of items visited or -1 on error
+	 */
+	public int forEach(Class<? extends T> classItem, String whereClause, String[] whereArgs, RowVisitor<? super T> visitor,
+					   QueryControl control) {
+		boolean started = false;
+		try {
+			databaseHelper.beginRead();
+			started = true;
+			return table.forEachEntryWhere(database, whereClause, whereArgs, classItem.newInstance(), table.getDataMapper(), visitor, control);
+		} catch (DBException | InstantiationException | IllegalAccessException e) {
+			Logger.error(this, "forEach:Problems getting entries: " + e.getMessage());
+		} finally {
+			if (started) {
+				databaseHelper.endRead();
+			}
+		}
+		return -1;
+	}
+
     /**
      * Get items with where clause
      * @param classItem
@@ -122,16 +278,29 @@ public class CRUDHelper<T extends ReflectTableInterface> {
      * @return List of items
      */
 	public List<? extends T> getItemsWhere(Class<? extends T> classItem, String columnName, String columnValue) {
-		// Lock it!
-		mLock.lock();
+		return getItemsWhere(classItem, columnName, columnValue, null);
+	}
+
+    /**
+     * Get items with where clause
+     * @param classItem
+     * @param columnName
+     * @param columnValue
+     * @param control may be null. Cancelling it stops the read and returns null
+     * @return List of items
+     */
+	public List<? extends T> getItemsWhere(Class<? extends T> classItem, String columnName, String columnValue, QueryControl control) {
+		boolean started = false;
 		try {
-			databaseHelper.beginOpen();
-			return table.getAllEntriesWhere(database, (Class<T>) classItem, columnName, columnValue, table.getMapper());
+			databaseHelper.beginRead();
+			started = true;
+			return table.getAllEntriesWhere(database, (Class<T>) classItem, columnName, columnValue, table.getDataMapper(), control);
 		} catch (DBException e) {
 			Logger.error(this, "getItemsWhere:Problems starting transaction: " + e.getMessage());
 		} finally {
-			databaseHelper.endOpen();
-			mLock.unlock();
+			if (started) {
+				databaseHelper.endRead();
+			}
 		}
 		return null;
 	}
@@ -143,16 +312,28 @@ public class CRUDHelper<T extends ReflectTableInterface> {
 	 * @return List of items
 	 */
 	public List<? extends T> getItemsWhere(Class<? extends T> classItem, List<ColumnValue> fields) {
-		// Lock it!
-		mLock.lock();
+		return getItemsWhere(classItem, fields, null);
+	}
+
+	/**
+	 * Get all items where the given list of column/value strings is given in the ClassField list
+	 * @param classItem
+	 * @param fields
+	 * @param control may be null. Cancelling it stops the read and returns null
+	 * @return List of items
+	 */
+	public List<? extends T> getItemsWhere(Class<? extends T> classItem, List<ColumnValue> fields, QueryControl control) {
+		boolean started = false;
 		try {
-			databaseHelper.beginOpen();
-			return table.getAllEntriesWhere(database, (Class<T>) classItem, fields, table.getMapper());
+			databaseHelper.beginRead();
+			started = true;
+			return table.getAllEntriesWhere(database, (Class<T>) classItem, fields, table.getDataMapper(), control);
 		} catch (DBException e) {
 			Logger.error(this, "getItemsWhere:Problems starting transaction: " + e.getMessage());
 		} finally {
-			databaseHelper.endOpen();
-			mLock.unlock();
+			if (started) {
+				databaseHelper.endRead();
+			}
 		}
 		return null;
 	}
@@ -165,16 +346,17 @@ public class CRUDHelper<T extends ReflectTableInterface> {
 	 * @return T
 	 */
 	public T getItemWhere(T classItem, String columnName, String columnValue) {
-		// Lock it!
-		mLock.lock();
+		boolean started = false;
 		try {
-			databaseHelper.beginOpen();
-			return table.getEntry(database, classItem, columnName, columnValue, table.getMapper());
+			databaseHelper.beginRead();
+			started = true;
+			return table.getEntry(database, classItem, columnName, columnValue, table.getDataMapper());
 		} catch (DBException e) {
 			Logger.error(this, "getItemWhere:Problems starting transaction: " + e.getMessage() );
 		} finally {
-			databaseHelper.endOpen();
-			mLock.unlock();
+			if (started) {
+				databaseHelper.endRead();
+			}
 		}
 		return null;
 	}
@@ -196,16 +378,17 @@ public class CRUDHelper<T extends ReflectTableInterface> {
 	public Cursor query(boolean distinct, String table, String[] columns,
 						String selection, String[] selectionArgs, String groupBy,
 						String having, String orderBy, String limit) throws DBException {
-		// Lock it!
-		mLock.lock();
+		boolean started = false;
 		try {
-			databaseHelper.beginOpen();
+			databaseHelper.beginRead();
+			started = true;
 			return databaseHelper.query(distinct, table, columns, selection, selectionArgs, groupBy, having, orderBy, limit);
 		} catch (DBException e) {
 			Logger.error(this, "query:Problems starting  transaction: " + e.getMessage() );
 		} finally {
-			databaseHelper.endOpen();
-			mLock.unlock();
+			if (started) {
+				databaseHelper.endRead();
+			}
 		}
 		return null;
 	}
@@ -229,18 +412,19 @@ public class CRUDHelper<T extends ReflectTableInterface> {
 						String selection, String[] selectionArgs, String groupBy,
 						String having, String orderBy, String limit, CancellationSignal cancellationSignal) throws DBException {
 
-		// Lock it!
-		mLock.lock();
+		boolean started = false;
 		try {
-			databaseHelper.beginOpen();
+			databaseHelper.beginRead();
+			started = true;
 			return databaseHelper.query(distinct, table, columns,
 										selection, selectionArgs, groupBy,
 										having, orderBy, limit, cancellationSignal);
 		} catch (DBException e) {
 			Logger.error(this, "query:Problems starting transaction: " + e.getMessage() );
 		} finally {
-			databaseHelper.endOpen();
-			mLock.unlock();
+			if (started) {
+				databaseHelper.endRead();
+			}
 		}
 		return null;
 	}
@@ -260,18 +444,19 @@ public class CRUDHelper<T extends ReflectTableInterface> {
 	public Cursor query(String table, String[] columns, String selection,
 						String[] selectionArgs, String groupBy, String having,
 						String orderBy)  throws DBException {
-		// Lock it!
-		mLock.lock();
+		boolean started = false;
 		try {
-			databaseHelper.beginOpen();
+			databaseHelper.beginRead();
+			started = true;
 			return databaseHelper.query(table, columns,
 										selection, selectionArgs, groupBy,
 										having, orderBy);
 		} catch (DBException e) {
 			Logger.error(this, "query:Problems starting transaction: " + e.getMessage() );
 		} finally {
-			databaseHelper.endOpen();
-			mLock.unlock();
+			if (started) {
+				databaseHelper.endRead();
+			}
 		}
 		return null;
 	}
@@ -292,18 +477,19 @@ public class CRUDHelper<T extends ReflectTableInterface> {
 	public Cursor query(String table, String[] columns, String selection,
 						String[] selectionArgs, String groupBy, String having,
 						String orderBy, String limit)  throws DBException {
-		// Lock it!
-		mLock.lock();
+		boolean started = false;
 		try {
-			databaseHelper.beginOpen();
+			databaseHelper.beginRead();
+			started = true;
 			return databaseHelper.query(table, columns,
 										selection, selectionArgs, groupBy,
 										having, orderBy, limit);
 		} catch (DBException e) {
 			Logger.error(this, "query:Problems starting transaction: " + e.getMessage() );
 		} finally {
-			databaseHelper.endOpen();
-			mLock.unlock();
+			if (started) {
+				databaseHelper.endRead();
+			}
 		}
 		return null;
 	}
@@ -312,8 +498,6 @@ public class CRUDHelper<T extends ReflectTableInterface> {
 	 * Execute sql statement. Be careful.
 	 */
 	public void execSQL(String sql) throws DBException {
-		// Lock it!
-		mLock.lock();
 		try {
 			databaseHelper.beginOpen();
 			databaseHelper.execSQL(sql);
@@ -321,7 +505,6 @@ public class CRUDHelper<T extends ReflectTableInterface> {
 			Logger.error(this, "execSQL:Problems starting transaction: " + e.getMessage() );
 		} finally {
 			databaseHelper.endOpen();
-			mLock.unlock();
 		}
 	}
 	/**
@@ -329,15 +512,17 @@ public class CRUDHelper<T extends ReflectTableInterface> {
 	 * @return List<T>
 	 */
 	public List<T> getItems(Class<T> classItem, long id) {
-		// Lock it!
-		mLock.lock();
+		boolean started = false;
 		try {
-			databaseHelper.beginOpen();
-			return table.getAllEntriesWhere(database, classItem, Table.ID, String.valueOf(id), table.getMapper());
+			databaseHelper.beginRead();
+			started = true;
+			return table.getAllEntriesWhere(database, classItem, Table.ID, String.valueOf(id), table.getDataMapper());
 		} catch (DBException e) {
 			Logger.error(this, "getItems:Problems starting transaction: " + e.getMessage() );
 		} finally {
-			mLock.unlock();
+			if (started) {
+				databaseHelper.endRead();
+			}
 		}
 		return null;
 	}
@@ -347,16 +532,17 @@ public class CRUDHelper<T extends ReflectTableInterface> {
      * @return Cursor
      */
     public Cursor getItemCursor() {
-        // Lock it!
-        mLock.lock();
+        boolean started = false;
         try {
-			databaseHelper.beginOpen();
+			databaseHelper.beginRead();
+			started = true;
 			return table.getAllEntries(database);
         } catch (DBException e) {
             Logger.error(this, "getItemCursor:Problems starting transaction: " + e.getMessage() );
         } finally {
-			databaseHelper.endOpen();
-            mLock.unlock();
+			if (started) {
+				databaseHelper.endRead();
+			}
         }
         return null;
 
@@ -366,19 +552,22 @@ public class CRUDHelper<T extends ReflectTableInterface> {
 	 * @param id
 	 */
 	public void deleteItem(long id) {
-		// Lock it!
-		mLock.lock();
+		boolean started = false;
+		boolean successful = false;
 		try {
 			databaseHelper.startTransaction();
+			started = true;
 			long deleted = table.deleteEntryWhere(database, Table.ID, String.valueOf(id));
 			if (deleted < 1) {
 				Logger.error("Could not delete item with id " + id);
 			}
+			successful = true;
 		} catch (DBException e) {
 			Logger.error(this, "deleteItem:Problems starting transaction: " + e.getMessage() );
 		} finally {
-			databaseHelper.endTransaction();
-			mLock.unlock();
+			if (started) {
+				databaseHelper.endTransaction(successful);
+			}
 		}
 	}
 
@@ -388,52 +577,138 @@ public class CRUDHelper<T extends ReflectTableInterface> {
      * @param columnValue
      */
     public void deleteItemWhere(String columnName, String columnValue) {
-        // Lock it!
-        mLock.lock();
+        boolean started = false;
+        boolean successful = false;
         try {
             databaseHelper.startTransaction();
+            started = true;
             long deleted = table.deleteEntryWhere(database, columnName, columnValue);
             Logger.debug("Deleted " + deleted + " items ");
+            successful = true;
         } catch (DBException e) {
             Logger.error(this, "deleteItemWhere:Problems starting transaction: " + e.getMessage() );
         } finally {
-            databaseHelper.endTransaction();
-            mLock.unlock();
+            if (started) {
+                databaseHelper.endTransaction(successful);
+            }
         }
     }
 
+	/**
+	 * Delete the items with the given ids in one transaction without loading them. Sub table rows are
+	 * deleted with them
+	 * @param ids
+	 * @return number of items deleted or -1 on error. Nothing is deleted on error
+	 */
+	public long deleteByIds(long[] ids) {
+		boolean started = false;
+		boolean successful = false;
+		try {
+			databaseHelper.startTransaction();
+			started = true;
+			long deleted = table.deleteEntries(database, ids);
+			successful = true;
+			return deleted;
+		} catch (DBException e) {
+			Logger.error(this, "deleteByIds:Problems deleting items: " + e.getMessage());
+		} finally {
+			if (started) {
+				// Nothing is deleted on error, including the chunks and sub table rows before the failure
+				databaseHelper.endTransaction(successful);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Delete the items that match the where clause without loading them. Sub table rows are deleted with them
+	 * @param whereClause needs to use "?" formats. Null deletes everything
+	 * @param whereArgs
+	 * @return number of items deleted or -1 on error. Nothing is deleted on error
+	 */
+	public long deleteWhere(String whereClause, String[] whereArgs) {
+		boolean started = false;
+		boolean successful = false;
+		try {
+			databaseHelper.startTransaction();
+			started = true;
+			long deleted = table.deleteEntryWhere(database, whereClause, whereArgs);
+			successful = true;
+			return deleted;
+		} catch (DBException e) {
+			Logger.error(this, "deleteWhere:Problems deleting items: " + e.getMessage());
+		} finally {
+			if (started) {
+				// Nothing is deleted on error, including the chunks and sub table rows before the failure
+				databaseHelper.endTransaction(successful);
+			}
+		}
+		return -1;
+	}
+
     public void deleteAllItems() {
-        // Lock it!
-        mLock.lock();
+        boolean started = false;
+        boolean successful = false;
         try {
             databaseHelper.startTransaction();
+            started = true;
             table.deleteAllEntries(database);
+            successful = true;
         } catch (DBException e) {
             Logger.error(this, "deleteAllItems:Problems starting transaction: " + e.getMessage() );
         } finally {
-            databaseHelper.endTransaction();
-            mLock.unlock();
+            if (started) {
+                databaseHelper.endTransaction(successful);
+            }
         }
 
     }
 
 	public void updateItem(T item, long id) {
-		// Lock it!
-		mLock.lock();
+		boolean started = false;
+		boolean successful = false;
 		try {
 			databaseHelper.startTransaction();
-			long result = table.updateEntry(database, item, id, table.getMapper());
+			started = true;
+			long result = table.updateEntry(database, item, id, table.getDataMapper());
             if (result <= 0) {
                 Logger.error("Unable to update table " + table.getTableName());
             }
+			successful = true;
 		} catch (DBException e) {
 			Logger.error(this, "updateItem:Problems starting transaction: " + e.getMessage() );
 		} finally {
-			databaseHelper.endTransaction();
-			mLock.unlock();
+			if (started) {
+				databaseHelper.endTransaction(successful);
+			}
 		}
 	}
 
+	/**
+	 * Update a list of items by id in one transaction, reusing one compiled update statement
+	 * @param items
+	 * @param columns columns to write. None writes every column
+	 * @return number of rows updated or -1 on error. Nothing is updated on error
+	 */
+	public int updateAll(List<? extends T> items, String... columns) {
+		boolean started = false;
+		boolean successful = false;
+		try {
+			databaseHelper.startTransaction();
+			started = true;
+			int updated = table.updateEntries(database, items, columns, table.getDataMapper());
+			successful = true;
+			return updated;
+		} catch (DBException e) {
+			Logger.error(this, "updateAll:Problems updating items: " + e.getMessage());
+		} finally {
+			if (started) {
+				databaseHelper.endTransaction(successful);
+			}
+		}
+		return -1;
+	}
+
 	/**
 	 * Update a table with the given where clause
 	 * @param cv
@@ -444,19 +719,23 @@ public class CRUDHelper<T extends ReflectTableInterface> {
 	public long updateEntryWhere(ContentValues cv, String whereClause,
 								String[] whereArgs) {
 
-		// Lock it!
-		mLock.lock();
+		boolean started = false;
+		boolean successful = false;
 		try {
 			databaseHelper.startTransaction();
+			started = true;
 			long result = table.updateEntryWhere(database, cv, whereClause, whereArgs);
 			if (result <= 0) {
 				Logger.error("Unable to update table " + table.getTableName());
 			}
+			successful = true;
+			return result;
 		} catch (DBException e) {
 			Logger.error(this, "updateEntryWhere:Problems starting transaction: " + e.getMessage() );
 		} finally {
-			databaseHelper.endTransaction();
-			mLock.unlock();
+			if (started) {
+				databaseHelper.endTransaction(successful);
+			}
 		}
 		return -1;
 	}
@@ -0,0 +1,20 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+/**
+ * Models that implement this get partial updates. A snapshot of the column values is kept when the
+ * model is read or written, and updateItem only writes the columns that changed since then. An update
+ * with no changes is skipped. Use TrackedReflectTable, or keep the snapshot in a transient field.
+ */
+public interface ChangeTracked {
+	/**
+	 * Return the values from the last read or write
+	 * @return snapshot or null if there is none
+	 */
+	Object[] getSnapshot();
+
+	/**
+	 * Set by the table after a read or write. Set to null to write every column on the next update
+	 * @param snapshot
+	 */
+	void setSnapshot(Object[] snapshot);
+}
@@ -0,0 +1,142 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+import com.mastertechsoftware.easysqllibrary.reflect.UtilReflector;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the fields of a model class that map to columns. Built once per class and shared by every
+ * ReflectTable and Mapper so rows don't have to walk the class hierarchy each time.
+ * Instances never change after they are created.
+ */
+public class ClassSchema {
+	private static final Map<Class, ClassSchema> schemas = new ConcurrentHashMap<Class, ClassSchema>();
+
+	private final List<Field> fields;
+	private final List<Field> reflectFields;
+	private final Map<String, Field> columnFields;
+	private final Map<String, Field> reflectColumnFields;
+	private final Map<Field, FieldAccessor> accessors;
+
+	/**
+	 * Get the schema for the given class
+	 * @param schemaClass
+	 * @return ClassSchema
+	 */
+	public static ClassSchema get(Class schemaClass) {
+		ClassSchema schema = schemas.get(schemaClass);
+		if (schema == null) {
+			schema = new ClassSchema(schemaClass);
+			schemas.put(schemaClass, schema);
+		}
+		return schema;
+	}
+
+	private ClassSchema(Class schemaClass) {
+		fields = UtilReflector.getPersistentFields(schemaClass);
+		List<Field> reflectFieldList = new ArrayList<Field>();
+		Map<String, Field> columnFieldMap = new HashMap<String, Field>();
+		Map<String, Field> reflectColumnFieldMap = new HashMap<String, Field>();
+		Map<Field, FieldAccessor> accessorMap = new HashMap<Field, FieldAccessor>();
+		for (Field field : fields) {
+			FieldAccessor accessor = FieldAccessor.create(field);
+			if (accessor != null) {
+				accessorMap.put(field, accessor);
+			}
+			// Fields in a subclass hide fields with the same name in the superclass
+			putField(columnFieldMap, field.getName(), field);
+			if (UtilReflector.hasInterface(field.getType(), ReflectTableInterface.class)) {
+				reflectFieldList.add(field);
+				putField(reflectColumnFieldMap, field.getName() + Table.ID, field);
+			}
+		}
+		reflectFields = Collections.unmodifiableList(reflectFieldList);
+		columnFields = columnFieldMap;
+		reflectColumnFields = reflectColumnFieldMap;
+		accessors = accessorMap;
+	}
+
+	/**
+	 * Store the field under its exact and lower case name so most lookups don't need toLowerCase
+	 */
+	private static void putField(Map<String, Field> fieldMap, String name, Field field) {
+		String lowerName = name.toLowerCase();
+		if (fieldMap.containsKey(lowerName)) {
+			return;
+		}
+		fieldMap.put(lowerName, field);
+		if (!fieldMap.containsKey(name)) {
+			fieldMap.put(name, field);
+		}
+	}
+
+	private static Field findField(Map<String, Field> fieldMap, String columnName) {
+		Field field = fieldMap.get(columnName);
+		if (field == null) {
+			field = fieldMap.get(columnName.toLowerCase());
+		}
+		return field;
+	}
+
+	/**
+	 * Return all non transient fields
+	 * @return List<Field>
+	 */
+	public List<Field> getFields() {
+		return fields;
+	}
+
+	/**
+	 * Return the fields that are stored in their own table
+	 * @return List<Field>
+	 */
+	public List<Field> getReflectFields() {
+		return reflectFields;
+	}
+
+	/**
+	 * Return the field with the given column name
+	 * @param columnName
+	 * @return Field or null
+	 */
+	public Field getField(String columnName) {
+		return findField(columnFields, columnName);
+	}
+
+	/**
+	 * Return the nested table field whose id is stored in the given column (ie user_id)
+	 * @param columnName
+	 * @return Field or null
+	 */
+	public Field getReflectField(String columnName) {
+		return findField(reflectColumnFields, columnName);
+	}
+
+	/**
+	 * Return the typed accessor for a field of this class
+	 * @param field
+	 * @return FieldAccessor or null if the field type has no accessor
+	 */
+	public FieldAccessor getAccessor(Field field) {
+		return accessors.get(field);
+	}
+
+	/**
+	 * Return the fields for the given columns, indexed by column position in the list
+	 * @param columns
+	 * @return Field[] with null for columns that have no field
+	 */
+	public Field[] getColumnFields(List<Column> columns) {
+		Field[] columnFieldArray = new Field[columns.size()];
+		for (int i = 0; i < columnFieldArray.length; i++) {
+			columnFieldArray[i] = getField(columns.get(i).getName());
+		}
+		return columnFieldArray;
+	}
+}
@@ -158,6 +158,7 @@ public class DBBuilder {
         @Override
         protected void createLocalDB() {
             localDatabase = new Database(sqLiteDatabase);
+            localDatabase.setDatabaseHelper(this);
             localDatabase.setTables(tables);
         }
     }
@@ -0,0 +1,18 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+/**
+ * Called when an async database call finishes. Runs on the thread that did the work, not the main thread.
+ */
+public interface DBCallback<T> {
+	/**
+	 * The call finished
+	 * @param result
+	 */
+	void onSuccess(T result);
+
+	/**
+	 * The call failed
+	 * @param e
+	 */
+	void onError(Exception e);
+}
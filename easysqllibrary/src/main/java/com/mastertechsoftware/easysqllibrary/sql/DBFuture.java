@@ -0,0 +1,72 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Future for an async database call. Calls the optional callback when the work is done.
+ */
+public class DBFuture<T> extends FutureTask<T> {
+	private final DBCallback<? super T> callback;
+
+	public DBFuture(Callable<T> callable, DBCallback<? super T> callback) {
+		super(callable);
+		this.callback = callback;
+	}
+
+	/**
+	 * Run the callable on the executor
+	 * @param executor
+	 * @param callable
+	 * @param callback may be null
+	 * @return DBFuture
+	 */
+	public static <T> DBFuture<T> submit(Executor executor, Callable<T> callable, DBCallback<? super T> callback) {
+		DBFuture<T> future = new DBFuture<T>(callable, callback);
+		try {
+			executor.execute(future);
+		} catch (RejectedExecutionException e) {
+			future.setException(new DBException("Database executor is shut down", e));
+		}
+		return future;
+	}
+
+	/**
+	 * Return a future that has already failed
+	 * @param e
+	 * @param callback may be null
+	 * @return DBFuture
+	 */
+	public static <T> DBFuture<T> failed(Exception e, DBCallback<? super T> callback) {
+		DBFuture<T> future = new DBFuture<T>(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				return null;
+			}
+		}, callback);
+		future.setException(e);
+		return future;
+	}
+
+	@Override
+	protected void done() {
+		if (callback == null || isCancelled()) {
+			return;
+		}
+		T result;
+		try {
+			result = get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			callback.onError(cause instanceof Exception ? (Exception) cause : new DBException(cause));
+			return;
+		} catch (InterruptedException e) {
+			callback.onError(e);
+			return;
+		}
+		callback.onSuccess(result);
+	}
+}
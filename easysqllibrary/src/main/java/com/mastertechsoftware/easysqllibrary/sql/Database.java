@@ -15,6 +15,8 @@ public class Database {
 	protected List<Table> tables = new ArrayList<Table>();
 	protected SQLiteDatabase database;
 	protected int version = 1;
+	protected volatile ReadConnectionPool readPool;
+	protected BaseDatabaseHelper databaseHelper;
 
 	/**
 	 * Default Constructor. Set tables and database later
@@ -38,6 +40,77 @@ public class Database {
 		this.database = database;
 	}
 
+	/**
+	 * Set the helper that runs this database's transactions
+	 * @param databaseHelper
+	 */
+	public void setDatabaseHelper(BaseDatabaseHelper databaseHelper) {
+		this.databaseHelper = databaseHelper;
+	}
+
+	/**
+	 * Run the action if the current transaction, or the savepoint it is in, is rolled back
+	 * @param action
+	 */
+	public void onRollback(Runnable action) {
+		if (databaseHelper != null) {
+			databaseHelper.onRollback(action);
+		}
+	}
+
+	/**
+	 * Set the pool of read connections. Null sends reads to the main database
+	 * @param readPool
+	 */
+	public void setReadPool(ReadConnectionPool readPool) {
+		this.readPool = readPool;
+	}
+
+	/**
+	 * Return the read connection pool
+	 * @return ReadConnectionPool or null
+	 */
+	public ReadConnectionPool getReadPool() {
+		return readPool;
+	}
+
+	/**
+	 * Return true if reads go through the read connection pool
+	 * @return true if there is a pool
+	 */
+	public boolean hasReadPool() {
+		return readPool != null;
+	}
+
+	/**
+	 * Get a connection for reading. This is a pooled read only connection if there is a pool,
+	 * otherwise the main database. A thread inside a transaction always gets the main database so it
+	 * sees its own uncommitted writes. Call releaseReadDatabase() with it when done
+	 * @return SQLiteDatabase
+	 */
+	public SQLiteDatabase acquireReadDatabase() {
+		ReadConnectionPool pool = readPool;
+		if (pool != null && !(database != null && database.inTransaction())) {
+			try {
+				return pool.acquire();
+			} catch (SQLiteException e) {
+				Logger.error(this, "Problems opening read connection. Using main database", e);
+			}
+		}
+		return database;
+	}
+
+	/**
+	 * Release a connection from acquireReadDatabase()
+	 * @param readDatabase
+	 */
+	public void releaseReadDatabase(SQLiteDatabase readDatabase) {
+		ReadConnectionPool pool = readPool;
+		if (pool != null && readDatabase != null && readDatabase != database) {
+			pool.release(readDatabase);
+		}
+	}
+
 	/**
 	 * Set the versions for all tables
      * @param version
@@ -155,6 +228,19 @@ public class Database {
         return builder.toString();
     }
 
+	/**
+	 * Compact hash of the schema. Built from the version and the cached create strings of each table,
+	 * so no strings are built. Never 0, since 0 is the SQLite default for an unset application_id
+	 * @return fingerprint
+	 */
+	public int getSchemaFingerprint() {
+		int fingerprint = version;
+		for (Table table : tables) {
+			fingerprint = 31 * fingerprint + table.getCreateTableString().hashCode();
+		}
+		return fingerprint == 0 ? 1 : fingerprint;
+	}
+
 	/**
 	 * Drop all tables
 	 */
@@ -1,6 +1,7 @@
 package com.mastertechsoftware.easysqllibrary.sql;
 
 import java.util.List;
+import java.util.concurrent.Future;
 
 /**
  * Helper Class that does the regular CRUD operations
@@ -91,15 +92,28 @@ public class DatabaseHelper {
      * @return true if any insertion failed
      */
     public boolean addAll(Class<? extends ReflectTableInterface> tableClass, List<? extends ReflectTableInterface> tables) {
-        boolean failed = false;
-        for (ReflectTableInterface table : tables) {
-            if (DatabaseManager.getInstance().addItem(databaseName, tableClass, table) == -1) {
-                failed = true;
+        // One transaction and one compiled insert for the whole list
+        long[] ids = DatabaseManager.getInstance().addItems(databaseName, tableClass, tables);
+        if (ids == null) {
+            return true;
+        }
+        for (long id : ids) {
+            if (id == -1) {
+                return true;
             }
         }
-        return failed;
+        return false;
     }
 
+	/**
+	 * Run the work in one transaction. Everything is rolled back if the work throws
+	 * @param work
+	 * @throws DBException if the work failed
+	 */
+	public void inTransaction(UnitOfWork work) throws DBException {
+		DatabaseManager.getInstance().inTransaction(databaseName, work);
+	}
+
 	/**
      * Update a single table
      * @param tableClass
@@ -136,4 +150,83 @@ public class DatabaseHelper {
 		DatabaseManager.getInstance().deleteItemWhere(databaseName, tableClass, columnName, columnValue);
 
 	}
+
+	/**
+	 * Get a single table item without blocking
+	 * @param tableClass
+	 * @param id
+	 * @param callback may be null
+	 * @return Future. The result is null if not found
+	 */
+	public <T extends ReflectTableInterface> Future<T> getAsync(Class<T> tableClass, long id, DBCallback<? super T> callback) {
+		return DatabaseManager.getInstance().getItemAsync(databaseName, tableClass, id, callback);
+	}
+
+	/**
+	 * Get items where a column equals the column value without blocking
+	 * @param tableClass
+	 * @param columnName - name of column to search
+	 * @param columnValue - value of column to search
+	 * @param callback may be null
+	 * @return Future
+	 */
+	public <T extends ReflectTableInterface> Future<List<T>> getWhereAsync(Class<T> tableClass, String columnName, String columnValue,
+																		   DBCallback<? super List<T>> callback) {
+		return DatabaseManager.getInstance().getItemsWhereAsync(databaseName, tableClass, columnName, columnValue, callback);
+	}
+
+	/**
+	 * Return a list of all the table items without blocking
+	 * @param tableClass
+	 * @param callback may be null
+	 * @return Future
+	 */
+	public <T extends ReflectTableInterface> Future<List<T>> getAllAsync(Class<T> tableClass, DBCallback<? super List<T>> callback) {
+		return DatabaseManager.getInstance().getAllItemsAsync(databaseName, tableClass, callback);
+	}
+
+	/**
+	 * Add a single table without blocking
+	 * @param tableClass
+	 * @param table
+	 * @param callback may be null
+	 * @return Future with the id
+	 */
+	public <T extends ReflectTableInterface> Future<Long> addAsync(Class<T> tableClass, T table, DBCallback<? super Long> callback) {
+		return DatabaseManager.getInstance().addItemAsync(databaseName, tableClass, table, callback);
+	}
+
+	/**
+	 * Add a list of items without blocking
+	 * @param tableClass
+	 * @param tables
+	 * @param callback may be null
+	 * @return Future with the number of items added
+	 */
+	public <T extends ReflectTableInterface> Future<Integer> addAllAsync(Class<T> tableClass, List<? extends T> tables,
+																		 DBCallback<? super Integer> callback) {
+		return DatabaseManager.getInstance().addItemsAsync(databaseName, tableClass, tables, callback);
+	}
+
+	/**
+	 * Update a single table without blocking
+	 * @param tableClass
+	 * @param table
+	 * @param callback may be null
+	 * @return Future
+	 */
+	public <T extends ReflectTableInterface> Future<Void> updateAsync(Class<T> tableClass, T table, DBCallback<? super Void> callback) {
+		return DatabaseManager.getInstance().updateItemAsync(databaseName, tableClass, table, callback);
+	}
+
+	/**
+	 * Delete a single table item without blocking
+	 * @param tableClass
+	 * @param table
+	 * @param callback may be null
+	 * @return Future
+	 */
+	public <T extends ReflectTableInterface> Future<Void> deleteAsync(Class<T> tableClass, T table, DBCallback<? super Void> callback) {
+		return DatabaseManager.getInstance().deleteItemAsync(databaseName, tableClass, table.getId(), callback);
+	}
 }
@@ -11,6 +11,9 @@ import com.mastertechsoftware.logging.Logger;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 /**
  *  Manager for handling multiple reflection based databases
  */
@@ -75,6 +78,168 @@ public class DatabaseManager {
 		createDatabase(dbName);
 	}
 
+	/**
+	 * Register a database without opening it. The tables are built and the database is created
+	 * the first time it is used, or when prewarm() is called.
+	 * @param dbName
+	 * @param mainTableName
+	 * @param version
+	 * @param types
+	 */
+	public void registerDatabase(String dbName, String mainTableName, int version, Class<? extends ReflectTableInterface>... types) {
+		reflectionDBHelper = new ReflectionDBHelper(context, dbName, mainTableName, version, true, types);
+		databases.put(dbName, reflectionDBHelper);
+	}
+
+	/**
+	 * Build and open a registered database on the database thread
+	 * @param dbName
+	 * @return true if the database was found and the task was queued
+	 */
+	public boolean prewarm(String dbName) {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return false;
+		}
+		return reflectionDBHelper.prewarm();
+	}
+
+	/**
+	 * Keep the database open between calls, closing it after it has been idle for the given time
+	 * @param dbName
+	 * @param idleTimeout 0 to close after every call (the default), -1 to never close
+	 * @param unit
+	 */
+	public void setKeepAlive(String dbName, long idleTimeout, TimeUnit unit) {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return;
+		}
+		reflectionDBHelper.setKeepAlive(idleTimeout, unit);
+	}
+
+	/**
+	 * Turn write-ahead logging on so reads don't wait for writes. Best set before the database is opened,
+	 * for example right after registerDatabase
+	 * @param dbName
+	 * @param enabled
+	 */
+	public void setWriteAheadLogging(String dbName, boolean enabled) {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return;
+		}
+		reflectionDBHelper.setWriteAheadLogging(enabled);
+	}
+
+	/**
+	 * Set the number of read only connections used for queries when write-ahead logging is on
+	 * @param dbName
+	 * @param size 0 to run all queries on the main connection
+	 */
+	public void setReadPoolSize(String dbName, int size) {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return;
+		}
+		reflectionDBHelper.setReadPoolSize(size);
+	}
+
+	/**
+	 * Queue single item writes on the given database and commit them in batches
+	 * @param dbName
+	 * @param maxBatchSize most writes in one transaction
+	 * @param maxDelay longest a write waits for others to join its batch
+	 * @param unit
+	 * @param durability whether updates and deletes wait for the commit
+	 */
+	public void enableWriteBehind(String dbName, int maxBatchSize, long maxDelay, TimeUnit unit, WriteBehindQueue.Durability durability) {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return;
+		}
+		reflectionDBHelper.enableWriteBehind(maxBatchSize, maxDelay, unit, durability);
+	}
+
+	/**
+	 * Commit anything queued on the given database and go back to writing directly
+	 * @param dbName
+	 */
+	public void disableWriteBehind(String dbName) {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return;
+		}
+		reflectionDBHelper.disableWriteBehind();
+	}
+
+	/**
+	 * Wait until every queued write on the given database has committed
+	 * @param dbName
+	 */
+	public void flush(String dbName) {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return;
+		}
+		reflectionDBHelper.flush();
+	}
+
+	/**
+	 * Run the work in one transaction on the given database. Everything is rolled back if the work throws
+	 * @param dbName
+	 * @param work
+	 * @throws DBException if the work failed, the transaction could not be started or the database was not found
+	 */
+	public void inTransaction(String dbName, UnitOfWork work) throws DBException {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			throw new DBException("Could not find helper for database " + dbName);
+		}
+		reflectionDBHelper.inTransaction(work);
+	}
+
+	/**
+	 * Get a typed handle for the class. Resolve it once and keep it to skip the database and class
+	 * lookups on every call
+	 * @param dbName
+	 * @param type
+	 * @return TableHandle or null if the database or class was not found
+	 */
+	public <T extends ReflectTableInterface> TableHandle<T> table(String dbName, Class<T> type) {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return null;
+		}
+		return reflectionDBHelper.table(type);
+	}
+
+	/**
+	 * Stream the items that match the where clause. Rows are read a page at a time as the subscriber
+	 * requests them instead of building a list. Cancelling stops the reads
+	 * @param dbName
+	 * @param type
+	 * @param whereClause null for all items
+	 * @param whereArgs
+	 * @return Publisher or null if the database or class was not found
+	 */
+	public <T extends ReflectTableInterface> Publisher<T> publish(String dbName, Class<T> type, String whereClause, String[] whereArgs) {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return null;
+		}
+		return reflectionDBHelper.publish(type, whereClause, whereArgs);
+	}
+
 	/**
 	 * After deleting database, readd the database
 	 * @param dbName
@@ -107,6 +272,109 @@ public class DatabaseManager {
         return reflectionDBHelper.addItem(type, data);
     }
 
+	/**
+	 * Add a list of items in one transaction. The new ids are set on the items
+	 * @param dbName
+	 * @param type
+	 * @param items
+	 * @return new ids in list order (-1 for items that failed) or null if there was an error
+	 */
+	public long[] addItems(String dbName, Class<? extends ReflectTableInterface> type, List<? extends ReflectTableInterface> items) {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return null;
+		}
+		return reflectionDBHelper.addItems(type, items);
+	}
+
+	/**
+	 * Insert the item, or update the row with the same values in the conflict columns. Replaces
+	 * a getItemWhere followed by addItem or updateItem
+	 * @param dbName
+	 * @param type
+	 * @param data
+	 * @param conflictColumns none uses the unique columns, or the id if there are none
+	 * @return id of the inserted or updated row. -1 if there was an error
+	 */
+	public long upsert(String dbName, Class<? extends ReflectTableInterface> type, ReflectTableInterface data, String... conflictColumns) {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return -1;
+		}
+		return reflectionDBHelper.upsert(type, data, conflictColumns);
+	}
+
+	/**
+	 * Delete the items with the given ids without loading them. Sub table rows are deleted with them
+	 * @param dbName
+	 * @param type
+	 * @param ids
+	 * @return number of items deleted or -1 if there was an error
+	 */
+	public long deleteByIds(String dbName, Class<? extends ReflectTableInterface> type, long[] ids) {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return -1;
+		}
+		return reflectionDBHelper.deleteByIds(type, ids);
+	}
+
+	/**
+	 * Delete the items that match the where clause without loading them. Sub table rows are deleted with them
+	 * @param dbName
+	 * @param type
+	 * @param whereClause needs to use "?" formats
+	 * @param whereArgs
+	 * @return number of items deleted or -1 if there was an error
+	 */
+	public long deleteWhere(String dbName, Class<? extends ReflectTableInterface> type, String whereClause, String[] whereArgs) {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return -1;
+		}
+		return reflectionDBHelper.deleteWhere(type, whereClause, whereArgs);
+	}
+
+	/**
+	 * Update a list of items by id in one transaction
+	 * @param dbName
+	 * @param type
+	 * @param items
+	 * @param columns columns to write. None writes every column
+	 * @return number of rows updated or -1 if there was an error
+	 */
+	public int updateAll(String dbName, Class<? extends ReflectTableInterface> type, List<? extends ReflectTableInterface> items,
+						 String... columns) {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return -1;
+		}
+		return reflectionDBHelper.updateAll(type, items, columns);
+	}
+
+	/**
+	 * Upsert a list of items in one transaction
+	 * @param dbName
+	 * @param type
+	 * @param items
+	 * @param conflictColumns none uses the unique columns, or the id if there are none
+	 * @return ids in list order (-1 for items that failed) or null if there was an error
+	 */
+	public long[] upsertAll(String dbName, Class<? extends ReflectTableInterface> type, List<? extends ReflectTableInterface> items,
+							String... conflictColumns) {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return null;
+		}
+		return reflectionDBHelper.upsertAll(type, items, conflictColumns);
+	}
+
 
     /**
      * Update an existing item
@@ -195,12 +463,59 @@ public class DatabaseManager {
      * @return List of items
      */
     public List<? extends ReflectTableInterface> getAllItems(String dbName, Class<? extends ReflectTableInterface> type) {
+        return getAllItems(dbName, type, null);
+    }
+
+    /**
+     * Return a list of all items in the database
+     * @param dbName
+     * @param type
+     * @param control may be null. Cancel it to stop the read
+     * @return List of items
+     */
+    public List<? extends ReflectTableInterface> getAllItems(String dbName, Class<? extends ReflectTableInterface> type, QueryControl control) {
         ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
 		if (reflectionDBHelper == null) {
 			Logger.error("Could not find helper for database " + dbName);
 			return null;
 		}
-        return reflectionDBHelper.getAllItems(type);
+        return reflectionDBHelper.getAllItems(type, control);
+    }
+
+    /**
+     * Visit all items that match the where clause without building a list. The same item is reused
+     * for every row, so copy anything the visitor needs to keep.
+     * @param dbName
+     * @param type
+     * @param whereClause null for all items
+     * @param whereArgs
+     * @param visitor
+     * @return number of items visited or -1 on error
+     */
+    public <T extends ReflectTableInterface> int forEach(String dbName, Class<T> type, String whereClause, String[] whereArgs,
+                                                         RowVisitor<? super T> visitor) {
+                                                         return forEach(dbName, type, whereClause, whereArgs, visitor, null);
+    }
+
+    /**
+     * Visit all items that match the where clause without building a list. The same item is reused
+     * for every row, so copy anything the visitor needs to keep.
+     * @param dbName
+     * @param type
+     * @param whereClause null for all items
+     * @param whereArgs
+     * @param visitor
+     * @param control may be null. Cancel it to stop the read
+     * @return number of items visited or -1 on error
+     */
+    public <T extends ReflectTableInterface> int forEach(String dbName, Class<T> type, String whereClause, String[] whereArgs,
+                                                         RowVisitor<? super T> visitor, QueryControl control) {
+        ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return -1;
+		}
+        return reflectionDBHelper.forEach(type, whereClause, whereArgs, visitor, control);
     }
 
     /**
@@ -212,12 +527,26 @@ public class DatabaseManager {
      * @return List of items
      */
     public List<? extends ReflectTableInterface> getItemsWhere(String dbName, Class<? extends ReflectTableInterface> type, String columnName, String columnValue) {
+        return getItemsWhere(dbName, type, columnName, columnValue, null);
+    }
+
+    /**
+     * Return a list of items that match the query on the given column
+     * @param dbName
+     * @param type
+     * @param columnName
+     * @param columnValue
+     * @param control may be null. Cancel it to stop the read
+     * @return List of items
+     */
+    public List<? extends ReflectTableInterface> getItemsWhere(String dbName, Class<? extends ReflectTableInterface> type, String columnName, String columnValue,
+                                                              QueryControl control) {
         ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
 		if (reflectionDBHelper == null) {
 			Logger.error("Could not find helper for database " + dbName);
 			return null;
 		}
-        return reflectionDBHelper.getItemsWhere(type, columnName, columnValue);
+        return reflectionDBHelper.getItemsWhere(type, columnName, columnValue, control);
     }
 
 	/**
@@ -228,12 +557,25 @@ public class DatabaseManager {
 	 * @return
 	 */
     public List<? extends ReflectTableInterface> getItemsWhere(String dbName, Class<? extends ReflectTableInterface> type, List<ColumnValue> fields) {
+        return getItemsWhere(dbName, type, fields, null);
+    }
+
+	/**
+	 * Get all entries with multiple where values
+	 * @param dbName
+	 * @param type
+	 * @param fields
+	 * @param control may be null. Cancel it to stop the read
+	 * @return
+	 */
+    public List<? extends ReflectTableInterface> getItemsWhere(String dbName, Class<? extends ReflectTableInterface> type, List<ColumnValue> fields,
+                                                              QueryControl control) {
         ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
 		if (reflectionDBHelper == null) {
 			Logger.error("Could not find helper for database " + dbName);
 			return null;
 		}
-        return reflectionDBHelper.getItemsWhere(type, fields);
+        return reflectionDBHelper.getItemsWhere(type, fields, control);
     }
 
 	/**
@@ -244,13 +586,25 @@ public class DatabaseManager {
 	 * @return Object
 	 */
 	public Object getItem(String dbName, Class<? extends ReflectTableInterface> type, long id) {
+		return getItem(dbName, type, id, null);
+	}
+
+	/**
+	 * Get a single item
+	 * @param dbName
+	 * @param type
+	 * @param id
+	 * @param control may be null. Cancel it to stop the read
+	 * @return Object
+	 */
+	public Object getItem(String dbName, Class<? extends ReflectTableInterface> type, long id, QueryControl control) {
 		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
 		if (reflectionDBHelper == null) {
 			Logger.error("Could not find helper for database " + dbName);
 			return null;
 		}
 		try {
-			return reflectionDBHelper.getItem(type, id, type.newInstance());
+			return reflectionDBHelper.getItem(type, id, type.newInstance(), control);
 		} catch (InstantiationException e) {
 			Logger.error("Problems Creating object of type " + type.getName(), e);
 		} catch (IllegalAccessException e) {
@@ -498,4 +852,152 @@ public class DatabaseManager {
         return reflectionDBHelper.getTable(type);
     }
 
+	/**
+	 * Set the executor for async writes on the given database
+	 * @param dbName
+	 * @param executor null for the database thread
+	 */
+	public void setWriteExecutor(String dbName, Executor executor) {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return;
+		}
+		reflectionDBHelper.setWriteExecutor(executor);
+	}
+
+	/**
+	 * Set the executor for async reads on the given database
+	 * @param dbName
+	 * @param executor null for the shared read pool
+	 */
+	public void setReadExecutor(String dbName, Executor executor) {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return;
+		}
+		reflectionDBHelper.setReadExecutor(executor);
+	}
+
+	/**
+	 * Get all items for the class without blocking
+	 * @param dbName
+	 * @param type
+	 * @param callback may be null
+	 * @return Future
+	 */
+	public <T extends ReflectTableInterface> Future<List<T>> getAllItemsAsync(String dbName, Class<T> type, DBCallback<? super List<T>> callback) {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return DBFuture.failed(new DBException("Could not find helper for database " + dbName), callback);
+		}
+		return reflectionDBHelper.getAllItemsAsync(type, callback);
+	}
+
+	/**
+	 * Get a single item without blocking
+	 * @param dbName
+	 * @param type
+	 * @param id
+	 * @param callback may be null
+	 * @return Future. The result is null if not found
+	 */
+	public <T extends ReflectTableInterface> Future<T> getItemAsync(String dbName, Class<T> type, long id, DBCallback<? super T> callback) {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return DBFuture.failed(new DBException("Could not find helper for database " + dbName), callback);
+		}
+		return reflectionDBHelper.getItemAsync(type, id, callback);
+	}
+
+	/**
+	 * Get all items with the given value without blocking
+	 * @param dbName
+	 * @param type
+	 * @param columnName
+	 * @param columnValue
+	 * @param callback may be null
+	 * @return Future
+	 */
+	public <T extends ReflectTableInterface> Future<List<T>> getItemsWhereAsync(String dbName, Class<T> type, String columnName,
+																		   String columnValue, DBCallback<? super List<T>> callback) {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return DBFuture.failed(new DBException("Could not find helper for database " + dbName), callback);
+		}
+		return reflectionDBHelper.getItemsWhereAsync(type, columnName, columnValue, callback);
+	}
+
+	/**
+	 * Add a new item without blocking
+	 * @param dbName
+	 * @param type
+	 * @param data
+	 * @param callback may be null
+	 * @return Future with the id of the new item
+	 */
+	public <T extends ReflectTableInterface> Future<Long> addItemAsync(String dbName, Class<T> type, T data, DBCallback<? super Long> callback) {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return DBFuture.failed(new DBException("Could not find helper for database " + dbName), callback);
+		}
+		return reflectionDBHelper.addItemAsync(type, data, callback);
+	}
+
+	/**
+	 * Add a list of items without blocking
+	 * @param dbName
+	 * @param type
+	 * @param items
+	 * @param callback may be null
+	 * @return Future with the number of items added
+	 */
+	public <T extends ReflectTableInterface> Future<Integer> addItemsAsync(String dbName, Class<T> type, List<? extends T> items,
+																	   DBCallback<? super Integer> callback) {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return DBFuture.failed(new DBException("Could not find helper for database " + dbName), callback);
+		}
+		return reflectionDBHelper.addItemsAsync(type, items, callback);
+	}
+
+	/**
+	 * Update an existing item without blocking
+	 * @param dbName
+	 * @param type
+	 * @param data
+	 * @param callback may be null
+	 * @return Future
+	 */
+	public <T extends ReflectTableInterface> Future<Void> updateItemAsync(String dbName, Class<T> type, T data, DBCallback<? super Void> callback) {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return DBFuture.failed(new DBException("Could not find helper for database " + dbName), callback);
+		}
+		return reflectionDBHelper.updateItemAsync(type, data, callback);
+	}
+
+	/**
+	 * Delete the item with the given id without blocking
+	 * @param dbName
+	 * @param type
+	 * @param id
+	 * @param callback may be null
+	 * @return Future
+	 */
+	public <T extends ReflectTableInterface> Future<Void> deleteItemAsync(String dbName, Class<T> type, long id, DBCallback<? super Void> callback) {
+		ReflectionDBHelper reflectionDBHelper = databases.get(dbName);
+		if (reflectionDBHelper == null) {
+			Logger.error("Could not find helper for database " + dbName);
+			return DBFuture.failed(new DBException("Could not find helper for database " + dbName), callback);
+		}
+		return reflectionDBHelper.deleteItemAsync(type, id, callback);
+	}
 }
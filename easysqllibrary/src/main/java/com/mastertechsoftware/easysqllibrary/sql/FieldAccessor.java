@@ -0,0 +1,354 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+
+import java.lang.reflect.Field;
+
+/**
+ * Typed getter and setter for a single model field. One accessor is created per field and cached in
+ * ClassSchema. Primitive fields use the typed Field methods (getInt/setInt etc) so values are not boxed
+ * on the way in from the cursor or out to a compiled statement.
+ */
+public abstract class FieldAccessor {
+	protected final Field field;
+
+	protected FieldAccessor(Field field) {
+		this.field = field;
+	}
+
+	/**
+	 * Create the accessor for the given field. The field must already be accessible
+	 * @param field
+	 * @return FieldAccessor or null if the field type has no accessor
+	 */
+	public static FieldAccessor create(Field field) {
+		Class<?> fieldType = field.getType();
+		if (fieldType == int.class) {
+			return new IntAccessor(field);
+		} else if (fieldType == long.class) {
+			return new LongAccessor(field);
+		} else if (fieldType == double.class) {
+			return new DoubleAccessor(field);
+		} else if (fieldType == float.class) {
+			return new FloatAccessor(field);
+		} else if (fieldType == boolean.class) {
+			return new BooleanAccessor(field);
+		} else if (fieldType == String.class) {
+			return new StringAccessor(field);
+		} else if (fieldType == Integer.class) {
+			return new IntegerAccessor(field);
+		} else if (fieldType == Long.class) {
+			return new BoxedLongAccessor(field);
+		} else if (fieldType == Double.class) {
+			return new BoxedDoubleAccessor(field);
+		} else if (fieldType == Float.class) {
+			return new BoxedFloatAccessor(field);
+		} else if (fieldType == Boolean.class) {
+			return new BoxedBooleanAccessor(field);
+		} else if (fieldType == Short.class) {
+			return new ShortAccessor(field);
+		}
+		return null;
+	}
+
+	public Field getField() {
+		return field;
+	}
+
+	/**
+	 * Set the field from the cursor column
+	 * @param cursor
+	 * @param index
+	 * @param target
+	 */
+	public abstract void read(Cursor cursor, int index, Object target) throws IllegalAccessException;
+
+	/**
+	 * Put the field value into the content values
+	 * @param cv
+	 * @param column
+	 * @param source
+	 */
+	public abstract void write(ContentValues cv, String column, Object source) throws IllegalAccessException;
+
+	/**
+	 * Bind the field value to a compiled statement. Null values are bound as NULL
+	 * @param statement
+	 * @param index 1 based bind index
+	 * @param source
+	 */
+	public abstract void bind(SQLiteStatement statement, int index, Object source) throws IllegalAccessException;
+
+	/**
+	 * Bind a boxed value, using NULL for null
+	 */
+	static void bindObject(SQLiteStatement statement, int index, Object value) {
+		if (value == null) {
+			statement.bindNull(index);
+		} else if (value instanceof String) {
+			statement.bindString(index, (String) value);
+		} else if (value instanceof Boolean) {
+			statement.bindLong(index, ((Boolean) value) ? 1 : 0);
+		} else if (value instanceof Float || value instanceof Double) {
+			statement.bindDouble(index, ((Number) value).doubleValue());
+		} else if (value instanceof Number) {
+			statement.bindLong(index, ((Number) value).longValue());
+		} else {
+			statement.bindString(index, value.toString());
+		}
+	}
+
+	static class IntAccessor extends FieldAccessor {
+		IntAccessor(Field field) {
+			super(field);
+		}
+
+		@Override
+		public void read(Cursor cursor, int index, Object target) throws IllegalAccessException {
+			field.setInt(target, cursor.getInt(index));
+		}
+
+		@Override
+		public void write(ContentValues cv, String column, Object source) throws IllegalAccessException {
+			cv.put(column, field.getInt(source));
+		}
+
+		@Override
+		public void bind(SQLiteStatement statement, int index, Object source) throws IllegalAccessException {
+			statement.bindLong(index, field.getInt(source));
+		}
+	}
+
+	static class LongAccessor extends FieldAccessor {
+		LongAccessor(Field field) {
+			super(field);
+		}
+
+		@Override
+		public void read(Cursor cursor, int index, Object target) throws IllegalAccessException {
+			field.setLong(target, cursor.getLong(index));
+		}
+
+		@Override
+		public void write(ContentValues cv, String column, Object source) throws IllegalAccessException {
+			cv.put(column, field.getLong(source));
+		}
+
+		@Override
+		public void bind(SQLiteStatement statement, int index, Object source) throws IllegalAccessException {
+			statement.bindLong(index, field.getLong(source));
+		}
+	}
+
+	static class DoubleAccessor extends FieldAccessor {
+		DoubleAccessor(Field field) {
+			super(field);
+		}
+
+		@Override
+		public void read(Cursor cursor, int index, Object target) throws IllegalAccessException {
+			field.setDouble(target, cursor.getDouble(index));
+		}
+
+		@Override
+		public void write(ContentValues cv, String column, Object source) throws IllegalAccessException {
+			cv.put(column, field.getDouble(source));
+		}
+
+		@Override
+		public void bind(SQLiteStatement statement, int index, Object source) throws IllegalAccessException {
+			statement.bindDouble(index, field.getDouble(source));
+		}
+	}
+
+	static class FloatAccessor extends FieldAccessor {
+		FloatAccessor(Field field) {
+			super(field);
+		}
+
+		@Override
+		public void read(Cursor cursor, int index, Object target) throws IllegalAccessException {
+			field.setFloat(target, cursor.getFloat(index));
+		}
+
+		@Override
+		public void write(ContentValues cv, String column, Object source) throws IllegalAccessException {
+			cv.put(column, field.getFloat(source));
+		}
+
+		@Override
+		public void bind(SQLiteStatement statement, int index, Object source) throws IllegalAccessException {
+			statement.bindDouble(index, field.getFloat(source));
+		}
+	}
+
+	static class BooleanAccessor extends FieldAccessor {
+		BooleanAccessor(Field field) {
+			super(field);
+		}
+
+		@Override
+		public void read(Cursor cursor, int index, Object target) throws IllegalAccessException {
+			field.setBoolean(target, cursor.getInt(index) == 1);
+		}
+
+		@Override
+		public void write(ContentValues cv, String column, Object source) throws IllegalAccessException {
+			cv.put(column, field.getBoolean(source));
+		}
+
+		@Override
+		public void bind(SQLiteStatement statement, int index, Object source) throws IllegalAccessException {
+			statement.bindLong(index, field.getBoolean(source) ? 1 : 0);
+		}
+	}
+
+	static class StringAccessor extends FieldAccessor {
+		StringAccessor(Field field) {
+			super(field);
+		}
+
+		@Override
+		public void read(Cursor cursor, int index, Object target) throws IllegalAccessException {
+			field.set(target, cursor.getString(index));
+		}
+
+		@Override
+		public void write(ContentValues cv, String column, Object source) throws IllegalAccessException {
+			cv.put(column, (String) field.get(source));
+		}
+
+		@Override
+		public void bind(SQLiteStatement statement, int index, Object source) throws IllegalAccessException {
+			bindObject(statement, index, field.get(source));
+		}
+	}
+
+	static class IntegerAccessor extends FieldAccessor {
+		IntegerAccessor(Field field) {
+			super(field);
+		}
+
+		@Override
+		public void read(Cursor cursor, int index, Object target) throws IllegalAccessException {
+			field.set(target, cursor.getInt(index));
+		}
+
+		@Override
+		public void write(ContentValues cv, String column, Object source) throws IllegalAccessException {
+			cv.put(column, (Integer) field.get(source));
+		}
+
+		@Override
+		public void bind(SQLiteStatement statement, int index, Object source) throws IllegalAccessException {
+			bindObject(statement, index, field.get(source));
+		}
+	}
+
+	static class ShortAccessor extends FieldAccessor {
+		ShortAccessor(Field field) {
+			super(field);
+		}
+
+		@Override
+		public void read(Cursor cursor, int index, Object target) throws IllegalAccessException {
+			field.set(target, cursor.getShort(index));
+		}
+
+		@Override
+		public void write(ContentValues cv, String column, Object source) throws IllegalAccessException {
+			cv.put(column, (Short) field.get(source));
+		}
+
+		@Override
+		public void bind(SQLiteStatement statement, int index, Object source) throws IllegalAccessException {
+			bindObject(statement, index, field.get(source));
+		}
+	}
+
+	static class BoxedLongAccessor extends FieldAccessor {
+		BoxedLongAccessor(Field field) {
+			super(field);
+		}
+
+		@Override
+		public void read(Cursor cursor, int index, Object target) throws IllegalAccessException {
+			field.set(target, cursor.getLong(index));
+		}
+
+		@Override
+		public void write(ContentValues cv, String column, Object source) throws IllegalAccessException {
+			cv.put(column, (Long) field.get(source));
+		}
+
+		@Override
+		public void bind(SQLiteStatement statement, int index, Object source) throws IllegalAccessException {
+			bindObject(statement, index, field.get(source));
+		}
+	}
+
+	static class BoxedDoubleAccessor extends FieldAccessor {
+		BoxedDoubleAccessor(Field field) {
+			super(field);
+		}
+
+		@Override
+		public void read(Cursor cursor, int index, Object target) throws IllegalAccessException {
+			field.set(target, cursor.getDouble(index));
+		}
+
+		@Override
+		public void write(ContentValues cv, String column, Object source) throws IllegalAccessException {
+			cv.put(column, (Double) field.get(source));
+		}
+
+		@Override
+		public void bind(SQLiteStatement statement, int index, Object source) throws IllegalAccessException {
+			bindObject(statement, index, field.get(source));
+		}
+	}
+
+	static class BoxedFloatAccessor extends FieldAccessor {
+		BoxedFloatAccessor(Field field) {
+			super(field);
+		}
+
+		@Override
+		public void read(Cursor cursor, int index, Object target) throws IllegalAccessException {
+			field.set(target, cursor.getFloat(index));
+		}
+
+		@Override
+		public void write(ContentValues cv, String column, Object source) throws IllegalAccessException {
+			cv.put(column, (Float) field.get(source));
+		}
+
+		@Override
+		public void bind(SQLiteStatement statement, int index, Object source) throws IllegalAccessException {
+			bindObject(statement, index, field.get(source));
+		}
+	}
+
+	static class BoxedBooleanAccessor extends FieldAccessor {
+		BoxedBooleanAccessor(Field field) {
+			super(field);
+		}
+
+		@Override
+		public void read(Cursor cursor, int index, Object target) throws IllegalAccessException {
+			field.set(target, cursor.getInt(index) == 1 ? Boolean.TRUE : Boolean.FALSE);
+		}
+
+		@Override
+		public void write(ContentValues cv, String column, Object source) throws IllegalAccessException {
+			cv.put(column, (Boolean) field.get(source));
+		}
+
+		@Override
+		public void bind(SQLiteStatement statement, int index, Object source) throws IllegalAccessException {
+			bindObject(statement, index, field.get(source));
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Looks up classes written by the EasySQLLibrary annotation processor. Generated classes live in the
+ * same package as the model and are named after the model's binary name plus a suffix (ie User_DataMapper).
+ * Lookups are cached so a missing class is only searched for once.
+ */
+class GeneratedClasses {
+	private static final Class<?> NOT_FOUND = Void.class;
+	private static final Map<String, Class<?>> generatedClasses = new ConcurrentHashMap<String, Class<?>>();
+
+	private GeneratedClasses() {
+	}
+
+	/**
+	 * Find the generated class for the given model
+	 * @param modelClass
+	 * @param suffix
+	 * @return generated class or null if the processor did not run for this model
+	 */
+	static Class<?> find(Class<?> modelClass, String suffix) {
+		String className = modelClass.getName() + suffix;
+		Class<?> generatedClass = generatedClasses.get(className);
+		if (generatedClass == null) {
+			try {
+				generatedClass = Class.forName(className, true, modelClass.getClassLoader());
+			} catch (ClassNotFoundException e) {
+				generatedClass = NOT_FOUND;
+			}
+			generatedClasses.put(className, generatedClass);
+		}
+		return generatedClass == NOT_FOUND ? null : generatedClass;
+	}
+
+	/**
+	 * Create a new instance of the generated class for the given model
+	 * @param modelClass
+	 * @param suffix
+	 * @return new instance or null if there is no generated class
+	 */
+	static Object newInstance(Class<?> modelClass, String suffix) {
+		Class<?> generatedClass = find(modelClass, suffix);
+		if (generatedClass == null) {
+			return null;
+		}
+		try {
+			return generatedClass.newInstance();
+		} catch (InstantiationException | IllegalAccessException e) {
+			throw new IllegalStateException("Could not create generated class " + generatedClass.getName(), e);
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+
+import com.mastertechsoftware.logging.Logger;
+
+/**
+ * Base class for the DataMappers written by the EasySQLLibrary annotation processor.
+ * Generated mappers read and write the model fields directly instead of going through reflection.
+ * ReflectTable will use the generated mapper automatically when one exists for the model.
+ */
+public abstract class GeneratedDataMapper<T> extends AbstractDataMapper<T> {
+	public static final String SUFFIX = "_DataMapper";
+	protected Database database;
+
+	/**
+	 * Create the generated mapper for the given model class
+	 * @param modelClass
+	 * @return mapper or null if the annotation processor did not generate one
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> GeneratedDataMapper<T> create(Class<?> modelClass) {
+		return (GeneratedDataMapper<T>) GeneratedClasses.newInstance(modelClass, SUFFIX);
+	}
+
+	public void setDatabase(Database database) {
+		this.database = database;
+	}
+
+	/**
+	 * Get the names of the columns this mapper reads, in the order readRow expects their indexes
+	 * @return column names
+	 */
+	public abstract String[] getColumnNames();
+
+	/**
+	 * Read a whole row using cursor indexes that were resolved once for the query
+	 * @param cursor
+	 * @param indexes cursor index for each of getColumnNames(), -1 if the column is not in the cursor
+	 * @param data
+	 */
+	public abstract void readRow(Cursor cursor, int[] indexes, T data) throws DBException;
+
+	/**
+	 * Bind the row values straight to a compiled insert or update statement. Nested table ids and the id
+	 * column are bound by ReflectTable.
+	 * @param statement
+	 * @param positions bind position for each of getColumnNames(), 0 if the column is not in the statement
+	 * @param data
+	 */
+	public abstract void bindRow(SQLiteStatement statement, int[] positions, T data);
+
+	/**
+	 * Bind a boxed or String value, using NULL for null
+	 */
+	protected static void bindValue(SQLiteStatement statement, int position, Object value) {
+		FieldAccessor.bindObject(statement, position, value);
+	}
+
+	/**
+	 * Read a nested table entry whose id is stored in the given column
+	 * @param cursor
+	 * @param columnIndex
+	 * @param type
+	 * @return entry or null if not found
+	 */
+	@SuppressWarnings("unchecked")
+	protected <E> E readReflectEntry(Cursor cursor, int columnIndex, Class<E> type) throws DBException {
+		if (database == null) {
+			return null;
+		}
+		ReflectTable subTable = (ReflectTable) database.getTable(type.getSimpleName());
+		if (subTable == null) {
+			Logger.error(this, "No table found for " + type.getSimpleName());
+			return null;
+		}
+		try {
+			return (E) subTable.getEntry(database, cursor.getLong(columnIndex), type.newInstance(), subTable.getDataMapper());
+		} catch (InstantiationException | IllegalAccessException e) {
+			Logger.error(this, "Problems creating " + type.getName(), e);
+		}
+		return null;
+	}
+}
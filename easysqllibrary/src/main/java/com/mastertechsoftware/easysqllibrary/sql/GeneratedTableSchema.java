@@ -0,0 +1,53 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+import java.util.List;
+
+/**
+ * Base class for the table schemas written by the EasySQLLibrary annotation processor.
+ * Holds everything ReflectTable would otherwise discover with reflection: table name, columns,
+ * nested table types and the CREATE TABLE statement.
+ */
+public abstract class GeneratedTableSchema {
+	public static final String SUFFIX = "_TableSchema";
+
+	/**
+	 * Create the generated schema for the given model class
+	 * @param modelClass
+	 * @return schema or null if the annotation processor did not generate one
+	 */
+	public static GeneratedTableSchema create(Class<?> modelClass) {
+		return (GeneratedTableSchema) GeneratedClasses.newInstance(modelClass, SUFFIX);
+	}
+
+	/**
+	 * Get the table name
+	 * @return name
+	 */
+	public abstract String getTableName();
+
+	/**
+	 * Create a new list of columns. Columns hold state so each table gets its own copy
+	 * @return List<Column>
+	 */
+	public abstract List<Column> createColumns();
+
+	/**
+	 * Get the classes of the fields that are stored in their own table
+	 * @return nested table classes
+	 */
+	public abstract Class<?>[] getReflectTypes();
+
+	/**
+	 * Get the precomputed create table statement
+	 * @return sql string
+	 */
+	public abstract String getCreateTableString();
+
+	/**
+	 * Return the id column name
+	 * @return id field
+	 */
+	public String getIdField() {
+		return Table.ID;
+	}
+}
@@ -0,0 +1,13 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+/**
+ * Produces items for subscribers on demand. Matches java.util.concurrent.Flow.Publisher and the
+ * Reactive Streams interface, so it is easy to adapt to either.
+ */
+public interface Publisher<T> {
+	/**
+	 * Add a subscriber. Items are sent only as the subscriber requests them
+	 * @param subscriber
+	 */
+	void subscribe(Subscriber<? super T> subscriber);
+}
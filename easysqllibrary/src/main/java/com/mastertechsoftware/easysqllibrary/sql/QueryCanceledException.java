@@ -0,0 +1,15 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+/**
+ * Thrown when a read is cancelled or runs past its deadline. See QueryControl.
+ */
+public class QueryCanceledException extends DBException {
+
+    public QueryCanceledException(String detailMessage) {
+        super(detailMessage);
+    }
+
+    public QueryCanceledException(String detailMessage, Throwable throwable) {
+        super(detailMessage, throwable);
+    }
+}
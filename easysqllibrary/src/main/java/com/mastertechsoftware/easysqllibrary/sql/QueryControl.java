@@ -0,0 +1,143 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+import android.os.CancellationSignal;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets a read be cancelled or bounded by a deadline. Pass one to the read calls and call cancel()
+ * (from any thread) when the result is no longer needed, e.g. when a screen goes away.
+ * The running statement is interrupted, rows stop being read and the connection is released.
+ * A control can't be reset. Use a new one for each screen or request.
+ */
+public class QueryControl {
+	private static ScheduledExecutorService timer;
+	// Control of the read running on this thread, so nested reads (sub tables) use it too
+	private static final ThreadLocal<QueryControl> current = new ThreadLocal<QueryControl>();
+
+	private final CancellationSignal cancellationSignal = new CancellationSignal();
+	// 0 when there is no deadline
+	private final long deadlineNanos;
+	private final ScheduledFuture<?> deadlineCancel;
+
+	/**
+	 * Create a control without a deadline
+	 */
+	public QueryControl() {
+		deadlineNanos = 0;
+		deadlineCancel = null;
+	}
+
+	/**
+	 * Create a control that cancels itself after the timeout
+	 * @param timeout
+	 * @param unit
+	 */
+	public QueryControl(long timeout, TimeUnit unit) {
+		long nanos = unit.toNanos(Math.max(0, timeout));
+		long deadline = System.nanoTime() + nanos;
+		deadlineNanos = deadline == 0 ? 1 : deadline;
+		deadlineCancel = getTimer().schedule(new Runnable() {
+			@Override
+			public void run() {
+				cancellationSignal.cancel();
+			}
+		}, nanos, TimeUnit.NANOSECONDS);
+	}
+
+	private static synchronized ScheduledExecutorService getTimer() {
+		if (timer == null) {
+			timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "QueryControl-timer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return timer;
+	}
+
+	/**
+	 * Cancel any read using this control
+	 */
+	public void cancel() {
+		if (deadlineCancel != null) {
+			deadlineCancel.cancel(false);
+		}
+		cancellationSignal.cancel();
+	}
+
+	/**
+	 * Return true if cancelled or past the deadline
+	 * @return true if reads should stop
+	 */
+	public boolean isCanceled() {
+		return cancellationSignal.isCanceled() || (deadlineNanos != 0 && System.nanoTime() - deadlineNanos >= 0);
+	}
+
+	/**
+	 * Return true if the control has a deadline
+	 * @return true if there is a deadline
+	 */
+	public boolean hasDeadline() {
+		return deadlineNanos != 0;
+	}
+
+	/**
+	 * Signal passed to SQLite so a running statement is interrupted
+	 * @return CancellationSignal
+	 */
+	public CancellationSignal getCancellationSignal() {
+		return cancellationSignal;
+	}
+
+	/**
+	 * Throw if the read should stop
+	 * @throws QueryCanceledException
+	 */
+	public void throwIfCanceled() throws QueryCanceledException {
+		if (isCanceled()) {
+			boolean timedOut = deadlineNanos != 0 && System.nanoTime() - deadlineNanos >= 0;
+			throw new QueryCanceledException(timedOut ? "Query timed out" : "Query canceled");
+		}
+	}
+
+	/**
+	 * Return the control of the read running on this thread
+	 * @return QueryControl or null
+	 */
+	static QueryControl current() {
+		return current.get();
+	}
+
+	/**
+	 * Make the control current for this thread
+	 * @param control
+	 * @return the previous control to pass to exit
+	 */
+	static QueryControl enter(QueryControl control) {
+		QueryControl previous = current.get();
+		if (control != null) {
+			current.set(control);
+		}
+		return previous;
+	}
+
+	/**
+	 * Restore the control returned by enter
+	 * @param previous
+	 */
+	static void exit(QueryControl previous) {
+		if (previous == null) {
+			current.remove();
+		} else {
+			current.set(previous);
+		}
+	}
+}
@@ -0,0 +1,245 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.OperationCanceledException;
+
+import com.mastertechsoftware.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Streams the rows of a query to subscribers as they ask for them. Each subscriber runs its own query
+ * on a worker that reads the rows a page at a time in id order, so the first item arrives without
+ * loading the rest and only one page is held in memory. The read connection is only held while a page
+ * is read, so a subscription can be left idle. Rows written between pages are seen if their id is
+ * past the last one sent.
+ */
+public class QueryPublisher<T extends ReflectTableInterface> implements Publisher<T> {
+	// Rows read per query
+	protected static final int PAGE_SIZE = 100;
+
+	protected final CRUDHelper<ReflectTableInterface> crudHelper;
+	protected final Class<T> type;
+	protected final String whereClause;
+	protected final String[] whereArgs;
+	protected final Executor executor;
+
+	/**
+	 * Create a publisher for the rows of a table
+	 * @param crudHelper
+	 * @param type
+	 * @param whereClause null for all rows
+	 * @param whereArgs
+	 * @param executor runs the query for each subscriber. It is blocked while the subscriber has not
+	 *                 requested more, but holds no connection. Null starts a new thread per subscriber
+	 */
+	public QueryPublisher(CRUDHelper<ReflectTableInterface> crudHelper, Class<T> type, String whereClause, String[] whereArgs,
+						  Executor executor) {
+		this.crudHelper = crudHelper;
+		this.type = type;
+		this.whereClause = whereClause;
+		this.whereArgs = whereArgs;
+		this.executor = executor;
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super T> subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException("subscriber");
+		}
+		QuerySubscription subscription = new QuerySubscription(subscriber);
+		subscriber.onSubscribe(subscription);
+		if (executor == null) {
+			Thread thread = new Thread(subscription, "QueryPublisher-" + type.getSimpleName());
+			thread.setDaemon(true);
+			thread.start();
+			return;
+		}
+		try {
+			executor.execute(subscription);
+		} catch (RejectedExecutionException e) {
+			subscription.fail(new DBException("Query rejected by executor", e));
+		}
+	}
+
+	/**
+	 * Runs the query for one subscriber
+	 */
+	class QuerySubscription implements Subscription, Runnable {
+		private final Subscriber<? super T> subscriber;
+		private final QueryControl control = new QueryControl();
+		// Items requested but not sent. Guarded by this
+		private long demand = 0;
+		private boolean cancelled = false;
+		private boolean done = false;
+		// Sent by the worker so calls to the subscriber stay serial
+		private Throwable pendingError;
+
+		QuerySubscription(Subscriber<? super T> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public synchronized void request(long n) {
+			if (cancelled) {
+				return;
+			}
+			if (n <= 0) {
+				pendingError = new IllegalArgumentException("Requested " + n + " items. Must be positive");
+				cancel();
+				return;
+			}
+			demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+			notifyAll();
+		}
+
+		@Override
+		public synchronized void cancel() {
+			cancelled = true;
+			control.cancel();
+			notifyAll();
+		}
+
+		/**
+		 * Wait until an item is requested
+		 * @return false if cancelled
+		 */
+		private synchronized boolean awaitDemand() {
+			while (demand == 0 && !cancelled) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					cancelled = true;
+				}
+			}
+			if (cancelled) {
+				return false;
+			}
+			if (demand != Long.MAX_VALUE) {
+				demand--;
+			}
+			return true;
+		}
+
+		private synchronized boolean isCancelled() {
+			return cancelled;
+		}
+
+		/**
+		 * Send the error unless the subscriber is already done
+		 * @param error
+		 */
+		void fail(Throwable error) {
+			synchronized (this) {
+				if (done) {
+					return;
+				}
+				done = true;
+			}
+			subscriber.onError(error);
+		}
+
+		@Override
+		public void run() {
+			QueryControl previous = QueryControl.enter(control);
+			try {
+				long lastId = Long.MIN_VALUE;
+				while (true) {
+					// Nothing is read, or held, until an item is requested
+					if (!awaitDemand()) {
+						return;
+					}
+					List<T> page = readPage(lastId);
+					for (int i = 0; i < page.size(); i++) {
+						// The demand taken above is for the first item of the page
+						if (i > 0 && !awaitDemand()) {
+							return;
+						}
+						subscriber.onNext(page.get(i));
+					}
+					if (page.size() < PAGE_SIZE) {
+						break;
+					}
+					lastId = page.get(page.size() - 1).getId();
+				}
+				synchronized (this) {
+					if (done || cancelled) {
+						return;
+					}
+					done = true;
+				}
+				subscriber.onComplete();
+			} catch (QueryCanceledException | OperationCanceledException e) {
+				if (!isCancelled()) {
+					fail(e);
+				}
+			} catch (Exception e) {
+				Logger.error(this, "QueryPublisher: problems reading " + type.getName(), e);
+				fail(e);
+			} finally {
+				QueryControl.exit(previous);
+				Throwable error;
+				synchronized (this) {
+					error = pendingError;
+				}
+				if (error != null) {
+					fail(error);
+				}
+			}
+		}
+
+		/**
+		 * Read the next page of rows after the given id. The connection is released before returning
+		 * @param lastId
+		 * @return rows in id order. Fewer than PAGE_SIZE if there are no more
+		 */
+		private List<T> readPage(long lastId) throws Exception {
+			ReflectTable<ReflectTableInterface> table = crudHelper.getTable();
+			Database database = crudHelper.getDatabase();
+			BaseDatabaseHelper databaseHelper = crudHelper.getDatabaseHelper();
+			String selection = table.getIdField() + " > ?";
+			String[] selectionArgs;
+			if (whereClause == null) {
+				selectionArgs = new String[] { String.valueOf(lastId) };
+			} else {
+				selection = "(" + whereClause + ") AND " + selection;
+				int argCount = whereArgs == null ? 0 : whereArgs.length;
+				selectionArgs = new String[argCount + 1];
+				if (argCount > 0) {
+					System.arraycopy(whereArgs, 0, selectionArgs, 0, argCount);
+				}
+				selectionArgs[argCount] = String.valueOf(lastId);
+			}
+			List<T> page = new ArrayList<T>();
+			Cursor cursor = null;
+			SQLiteDatabase readDatabase = null;
+			databaseHelper.beginRead();
+			try {
+				readDatabase = database.acquireReadDatabase();
+				cursor = table.query(readDatabase, selection, selectionArgs, table.getIdField(), String.valueOf(PAGE_SIZE), control);
+				if (cursor != null && cursor.moveToFirst()) {
+					RowBinder<ReflectTableInterface> binder = table.getRowBinder(cursor, table.getDataMapper());
+					do {
+						T item = type.newInstance();
+						binder.bind(cursor, item);
+						page.add(item);
+					} while (cursor.moveToNext());
+				}
+			} finally {
+				if (cursor != null) {
+					cursor.close();
+				}
+				if (readDatabase != null) {
+					database.releaseReadDatabase(readDatabase);
+				}
+				databaseHelper.endRead();
+			}
+			return page;
+		}
+	}
+}
@@ -0,0 +1,236 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+
+import com.mastertechsoftware.logging.Logger;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of read only connections to one database file. Only useful with write-ahead logging,
+ * where readers on other connections don't wait for the writer. Connections are opened on first use.
+ * A thread that already holds a connection gets the same one back, so nested reads can't exhaust the pool.
+ */
+public class ReadConnectionPool {
+	private final String path;
+	private final int size;
+	private final Semaphore permits;
+	private final ArrayDeque<SQLiteDatabase> idle = new ArrayDeque<SQLiteDatabase>();
+	private final ThreadLocal<Lease> leases = new ThreadLocal<Lease>();
+	// Bumped by close(). Connections leased before that are closed when they come back
+	private int generation = 0;
+
+	// Metrics
+	private final long createdNanos = System.nanoTime();
+	private final AtomicLong acquireCount = new AtomicLong();
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+	private final AtomicLong busyNanos = new AtomicLong();
+	private final AtomicInteger inUse = new AtomicInteger();
+	private final AtomicInteger peakInUse = new AtomicInteger();
+
+	/**
+	 * Create a pool for the database file
+	 * @param path full path of the database file
+	 * @param size maximum number of connections
+	 */
+	public ReadConnectionPool(String path, int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("Pool size must be at least 1");
+		}
+		this.path = path;
+		this.size = size;
+		permits = new Semaphore(size, true);
+	}
+
+	/**
+	 * Get a connection, waiting if all are in use. Call release() with it when done
+	 * @return SQLiteDatabase
+	 * @throws SQLiteException if a new connection could not be opened
+	 */
+	public SQLiteDatabase acquire() throws SQLiteException {
+		Lease lease = leases.get();
+		if (lease != null) {
+			lease.depth++;
+			return lease.connection;
+		}
+		long start = System.nanoTime();
+		permits.acquireUninterruptibly();
+		long waited = System.nanoTime() - start;
+		acquireCount.incrementAndGet();
+		totalWaitNanos.addAndGet(waited);
+		long max;
+		do {
+			max = maxWaitNanos.get();
+		} while (waited > max && !maxWaitNanos.compareAndSet(max, waited));
+
+		SQLiteDatabase connection;
+		int leaseGeneration;
+		synchronized (idle) {
+			connection = idle.poll();
+			leaseGeneration = generation;
+		}
+		if (connection == null) {
+			try {
+				connection = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY);
+			} catch (SQLiteException e) {
+				permits.release();
+				throw e;
+			}
+		}
+		int current = inUse.incrementAndGet();
+		int peak;
+		do {
+			peak = peakInUse.get();
+		} while (current > peak && !peakInUse.compareAndSet(peak, current));
+		leases.set(new Lease(connection, leaseGeneration, System.nanoTime()));
+		return connection;
+	}
+
+	/**
+	 * Return a connection from acquire()
+	 * @param connection
+	 */
+	public void release(SQLiteDatabase connection) {
+		Lease lease = leases.get();
+		if (lease == null || lease.connection != connection) {
+			Logger.error("ReadConnectionPool.release: connection not held by this thread");
+			return;
+		}
+		if (--lease.depth > 0) {
+			return;
+		}
+		leases.remove();
+		busyNanos.addAndGet(System.nanoTime() - lease.start);
+		inUse.decrementAndGet();
+		boolean stale;
+		synchronized (idle) {
+			stale = lease.generation != generation;
+			if (!stale) {
+				idle.push(connection);
+			}
+		}
+		if (stale) {
+			closeConnection(connection);
+		}
+		permits.release();
+	}
+
+	/**
+	 * Close the idle connections. Connections in use are closed when released.
+	 * The pool can still be used and opens new connections as needed.
+	 */
+	public void close() {
+		SQLiteDatabase[] connections;
+		synchronized (idle) {
+			generation++;
+			connections = idle.toArray(new SQLiteDatabase[idle.size()]);
+			idle.clear();
+		}
+		for (SQLiteDatabase connection : connections) {
+			closeConnection(connection);
+		}
+	}
+
+	private void closeConnection(SQLiteDatabase connection) {
+		try {
+			connection.close();
+		} catch (SQLiteException e) {
+			Logger.error("ReadConnectionPool: problems closing connection", e);
+		}
+	}
+
+	/**
+	 * Maximum number of connections
+	 * @return size
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Number of connections currently leased
+	 * @return in use count
+	 */
+	public int getInUse() {
+		return inUse.get();
+	}
+
+	/**
+	 * Highest number of connections leased at once
+	 * @return peak in use count
+	 */
+	public int getPeakInUse() {
+		return peakInUse.get();
+	}
+
+	/**
+	 * Number of connections handed out. Nested acquires on the same thread are not counted
+	 * @return acquire count
+	 */
+	public long getAcquireCount() {
+		return acquireCount.get();
+	}
+
+	/**
+	 * Total time spent waiting for a free connection
+	 * @return nanoseconds
+	 */
+	public long getTotalWaitNanos() {
+		return totalWaitNanos.get();
+	}
+
+	/**
+	 * Longest wait for a free connection
+	 * @return nanoseconds
+	 */
+	public long getMaxWaitNanos() {
+		return maxWaitNanos.get();
+	}
+
+	/**
+	 * Average wait for a free connection
+	 * @return nanoseconds
+	 */
+	public long getAverageWaitNanos() {
+		long count = acquireCount.get();
+		return count == 0 ? 0 : totalWaitNanos.get() / count;
+	}
+
+	/**
+	 * Fraction of the pool's capacity that has been in use since it was created.
+	 * Only counts leases that have been released
+	 * @return 0 to 1
+	 */
+	public double getUtilization() {
+		long elapsed = System.nanoTime() - createdNanos;
+		if (elapsed <= 0) {
+			return 0;
+		}
+		return Math.min(1.0, busyNanos.get() / ((double) elapsed * size));
+	}
+
+	@Override
+	public String toString() {
+		return "ReadConnectionPool{size=" + size + ", inUse=" + getInUse() + ", peakInUse=" + getPeakInUse()
+				+ ", acquires=" + getAcquireCount() + ", avgWaitNanos=" + getAverageWaitNanos()
+				+ ", maxWaitNanos=" + getMaxWaitNanos() + ", utilization=" + getUtilization() + "}";
+	}
+
+	static class Lease {
+		final SQLiteDatabase connection;
+		final int generation;
+		final long start;
+		int depth = 1;
+
+		Lease(SQLiteDatabase connection, int generation, long start) {
+			this.connection = connection;
+			this.generation = generation;
+			this.start = start;
+		}
+	}
+}
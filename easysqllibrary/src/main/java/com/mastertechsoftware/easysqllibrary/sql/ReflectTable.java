@@ -3,6 +3,7 @@ package com.mastertechsoftware.easysqllibrary.sql;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
 
 import com.mastertechsoftware.easysqllibrary.reflect.UtilReflector;
 import com.mastertechsoftware.logging.Logger;
@@ -10,30 +11,52 @@ import com.mastertechsoftware.logging.Logger;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 /**
  * Table that is built by using reflection on the object
  */
 public class ReflectTable<T> extends AbstractTable<T> {
+    // SQLite's default limit on bind variables in one statement
+    private static final int MAX_BIND_ARGS = 999;
 	private Mapper<T> mapper;
+    private GeneratedDataMapper<T> generatedMapper;
+    private GeneratedTableSchema generatedSchema;
+    // Built on first use, so tables with a generated schema skip the reflection when created
+    private volatile ClassSchema classSchema;
+    private volatile StatementPlan statementPlan;
     private T type;
     private Database database;
+    // Models that implement ChangeTracked keep a snapshot so updates only write changed columns
+    private final boolean tracked;
 
 	public ReflectTable(T type, Database database) {
         this.type = type;
         this.database = database;
+        tracked = type instanceof ChangeTracked;
 		mapper = new Mapper<>();
         this.mapper.setDatabase(database);
-		String tableName = type.getClass().getSimpleName().toLowerCase();
-		setTableName(tableName);
-        readProperties(type);
+        generatedMapper = GeneratedDataMapper.create(type.getClass());
+        if (generatedMapper != null) {
+            generatedMapper.setDatabase(database);
+        }
+        generatedSchema = GeneratedTableSchema.create(type.getClass());
+        if (generatedSchema != null) {
+            setTableName(generatedSchema.getTableName());
+            setIdField(generatedSchema.getIdField());
+            setColumns(generatedSchema.createColumns());
+            createTableString = generatedSchema.getCreateTableString();
+        } else {
+            String tableName = type.getClass().getSimpleName().toLowerCase();
+            setTableName(tableName);
+            readProperties(type);
+        }
 	}
 
     private void readProperties(T type) {
-        ArrayList<Field> allFields = UtilReflector.getAllFields(type.getClass());
-		allFields = UtilReflector.removeTransient(allFields);
         boolean idFieldFound = false;
-        for (Field field : allFields) {
+        for (Field field : getClassSchema().getFields()) {
             Column.COLUMN_TYPE column_type;
             Class<?> fieldType = field.getType();
             String fieldName = field.getName();
@@ -82,23 +105,61 @@ public class ReflectTable<T> extends AbstractTable<T> {
         }
     }
 
+    /**
+     * Get the fields that are stored in their own table. The list is shared and can't be modified
+     * @return List<Field>
+     */
     public List<Field> getReflectFields() {
-        List<Field> reflectFields = new ArrayList<Field>();
-        ArrayList<Field> allFields = UtilReflector.getAllFields(type.getClass());
-		allFields = UtilReflector.removeTransient(allFields);
-        for (Field field : allFields) {
-            Class<?> fieldType = field.getType();
-            if (UtilReflector.hasInterface(fieldType, ReflectTableInterface.class)) {
-                reflectFields.add(field);
+        return getClassSchema().getReflectFields();
+    }
+
+    /**
+     * Get the cached field information for the model class
+     * @return ClassSchema
+     */
+    public ClassSchema getClassSchema() {
+        ClassSchema schema = classSchema;
+        if (schema == null) {
+            schema = ClassSchema.get(type.getClass());
+            classSchema = schema;
+        }
+        return schema;
+    }
+
+    /**
+     * Get the classes of the fields that are stored in their own table
+     * @return List of nested table classes
+     */
+    public List<Class<? extends ReflectTableInterface>> getReflectTypes() {
+        List<Class<? extends ReflectTableInterface>> reflectTypes = new ArrayList<Class<? extends ReflectTableInterface>>();
+        if (generatedSchema != null) {
+            for (Class<?> reflectType : generatedSchema.getReflectTypes()) {
+                reflectTypes.add((Class<? extends ReflectTableInterface>) reflectType);
             }
+            return reflectTypes;
         }
-        return reflectFields;
+        for (Field reflectField : getReflectFields()) {
+            reflectTypes.add((Class<? extends ReflectTableInterface>) reflectField.getType());
+        }
+        return reflectTypes;
     }
 
     public Mapper<T> getMapper() {
 		return mapper;
 	}
 
+    /**
+     * Get the mapper to use for reading and writing rows. This is the generated mapper if the
+     * annotation processor created one for this model, otherwise the reflection mapper.
+     * @return DataMapper<T>
+     */
+    public DataMapper<T> getDataMapper() {
+        if (generatedMapper != null) {
+            return generatedMapper;
+        }
+        return mapper;
+    }
+
     /**
      * Insert a new entry into the db using a mapper
      * @param database
@@ -107,6 +168,14 @@ public class ReflectTable<T> extends AbstractTable<T> {
      * @return new id
      */
     public long insertEntry(Database database, T data, DataMapper<T> mapper) throws DBException {
+        long id = insertRow(database, data, mapper);
+        if (id != -1 && tracked) {
+            trackWrite(database, data, snapshot(data, mapper, getStatementPlan()));
+        }
+        return id;
+    }
+
+    private long insertRow(Database database, T data, DataMapper<T> mapper) throws DBException {
         if (data == null) {
             Logger.error("insertEntry data is null");
             return -1;
@@ -114,12 +183,14 @@ public class ReflectTable<T> extends AbstractTable<T> {
         if (UtilReflector.isBasicType(data.getClass())) {
             return super.insertEntry(database, data, mapper);
         }
-        ArrayList<Field> allFields = UtilReflector.getAllFields(type.getClass());
-		allFields = UtilReflector.removeTransient(allFields);
+        if (isStatementMapper(mapper)) {
+            return insertWithStatement(database, data, mapper, getStatementPlan());
+        }
         int columnPosition = 0;
         ContentValues cv = new ContentValues();
+        ClassSchema schema = getClassSchema();
         for (Column column : columns) {
-            Field field = AbstractDataMapper.getColumnField(allFields, column);
+            Field field = schema.getField(column.getName());
             if (field == null) {
                 continue;
             }
@@ -132,14 +203,12 @@ public class ReflectTable<T> extends AbstractTable<T> {
         List<Field> reflectfields = getReflectFields();
         for (Field reflectfield : reflectfields) {
             ReflectTable subTable = (ReflectTable) database.getTable(reflectfield.getType().getSimpleName());
-            T fieldData = (T) UtilReflector.getField(data, reflectfield.getName());
+            T fieldData = (T) getFieldData(reflectfield, data);
             if (fieldData != null) {
-                long id = subTable.insertEntry(database, fieldData, subTable.getMapper());
+                long id = subTable.insertEntry(database, fieldData, subTable.getDataMapper());
                 if (id != -1) {
                     String fieldName = reflectfield.getName() + "_id";
                     cv.put(fieldName, id);
-                    Column column = getColumn(fieldName);
-                    mapper.write(cv, column, fieldData);
                 } else {
                     Logger.error("Problems inserting " + subTable.getTableName());
                 }
@@ -148,84 +217,828 @@ public class ReflectTable<T> extends AbstractTable<T> {
         return super.insertEntry(database, cv);
     }
 
+    /**
+     * Insert a list of entries. With a statement mapper the insert statement is fetched once and
+     * rebound for each row. Call inside a transaction so the rows commit together.
+     * @param database
+     * @param items
+     * @param mapper
+     * @return new ids in list order. -1 for rows that failed
+     */
+    public long[] insertEntries(Database database, List<? extends T> items, DataMapper<T> mapper) throws DBException {
+        long[] ids = new long[items.size()];
+        if (!isStatementMapper(mapper) || getStatementPlan().nestedFields.length > 0) {
+            for (int i = 0; i < ids.length; i++) {
+                try {
+                    ids[i] = insertEntry(database, items.get(i), mapper);
+                } catch (DBException e) {
+                    // Same as the statement path. Mark the row and keep going with the rest
+                    Logger.error(this, "Problems inserting into " + getTableName(), e);
+                    ids[i] = -1;
+                }
+            }
+            return ids;
+        }
+        StatementPlan plan = getStatementPlan();
+        synchronized (plan.insert) {
+            SQLiteStatement statement;
+            try {
+                statement = plan.insert.get(database.getDatabase());
+            } catch (SQLiteException e) {
+                Logger.error(e.getMessage(), e);
+                throw new DBException(e.getMessage(), e);
+            }
+            for (int i = 0; i < ids.length; i++) {
+                T data = items.get(i);
+                ids[i] = -1;
+                if (data == null) {
+                    Logger.error("insertEntries data is null");
+                    continue;
+                }
+                statement.clearBindings();
+                bindColumns(statement, data, mapper, plan);
+                try {
+                    ids[i] = statement.executeInsert();
+                    if (tracked) {
+                        trackWrite(database, data, snapshot(data, mapper, plan));
+                    }
+                } catch (SQLiteException e) {
+                    // Only this row is rolled back. Keep going with the rest
+                    Logger.error(this, "Problems inserting into " + getTableName(), e);
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Insert the entry, or update the row with the same values in the conflict columns. Runs a compiled
+     * lookup and then the compiled update or insert. Call inside a transaction so no other write
+     * can come in between.
+     * @param database
+     * @param data
+     * @param conflictColumns columns that identify a row. Null or empty uses the unique columns, or the id if none.
+     *                        When the id is one of them, a new row gets the entry's id if it is set
+     * @param mapper
+     * @return id of the inserted or updated row. -1 if the insert failed
+     */
+    public long upsertEntry(Database database, T data, String[] conflictColumns, DataMapper<T> mapper) throws DBException {
+        if (data == null) {
+            Logger.error("upsertEntry data is null");
+            return -1;
+        }
+        String[] keyColumns = getConflictColumns(conflictColumns);
+        long id = findConflictId(database, data, keyColumns, mapper);
+        if (id == -1) {
+            return insertMissing(database, data, keyColumns, mapper);
+        }
+        updateEntry(database, data, id, mapper);
+        return id;
+    }
+
+    /**
+     * Upsert a list of entries. See upsertEntry
+     * @param database
+     * @param items
+     * @param conflictColumns
+     * @param mapper
+     * @return ids in list order. -1 for rows that failed
+     */
+    public long[] upsertEntries(Database database, List<? extends T> items, String[] conflictColumns, DataMapper<T> mapper)
+            throws DBException {
+        String[] keyColumns = getConflictColumns(conflictColumns);
+        long[] ids = new long[items.size()];
+        for (int i = 0; i < ids.length; i++) {
+            T data = items.get(i);
+            ids[i] = -1;
+            if (data == null) {
+                Logger.error("upsertEntries data is null");
+                continue;
+            }
+            long id = findConflictId(database, data, keyColumns, mapper);
+            if (id == -1) {
+                ids[i] = insertMissing(database, data, keyColumns, mapper);
+            } else {
+                updateEntry(database, data, id, mapper);
+                ids[i] = id;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Insert a row the upsert didn't find. When the id is a conflict column the row keeps the entry's id
+     * instead of a new one
+     * @return id of the new row. -1 if the insert failed
+     */
+    private long insertMissing(Database database, T data, String[] keyColumns, DataMapper<T> mapper) throws DBException {
+        long id = insertEntry(database, data, mapper);
+        long entryId = -1;
+        for (String keyColumn : keyColumns) {
+            if (keyColumn.equalsIgnoreCase(getIdField()) && data instanceof ReflectTableInterface) {
+                entryId = ((ReflectTableInterface) data).getId();
+            }
+        }
+        if (id == -1 || entryId <= 0 || id == entryId) {
+            return id;
+        }
+        // The insert statements don't bind the id, so move the new row to it. Fails if another row
+        // already has the id, which is a conflict on the other key columns
+        TableStatement move = getStatementPlan().getStatement("UPDATE " + getTableName() + " SET " + getIdField()
+                + "=? WHERE " + getIdField() + "=?");
+        try {
+            synchronized (move) {
+                SQLiteStatement statement = move.get(database.getDatabase());
+                statement.bindLong(1, entryId);
+                statement.bindLong(2, id);
+                statement.executeUpdateDelete();
+            }
+        } catch (SQLiteException e) {
+            Logger.error(e.getMessage(), e);
+            throw new DBException(e.getMessage(), e);
+        }
+        return entryId;
+    }
+
+    /**
+     * Get the columns that identify a row for an upsert
+     */
+    private String[] getConflictColumns(String[] conflictColumns) {
+        if (conflictColumns != null && conflictColumns.length > 0) {
+            return conflictColumns;
+        }
+        List<String> uniqueColumns = new ArrayList<String>();
+        for (Column column : columns) {
+            if (column.isUnique()) {
+                uniqueColumns.add(column.getName());
+            }
+        }
+        if (uniqueColumns.isEmpty()) {
+            return new String[] { getIdField() };
+        }
+        return uniqueColumns.toArray(new String[uniqueColumns.size()]);
+    }
+
+    /**
+     * Find the id of the row with the same values in the key columns
+     * @return id or -1 if there is no such row or a key value is null (NULLs never conflict)
+     */
+    private long findConflictId(Database database, T data, String[] keyColumns, DataMapper<T> mapper) throws DBException {
+        Object[] values = new Object[keyColumns.length];
+        for (int i = 0; i < keyColumns.length; i++) {
+            if (keyColumns[i].equalsIgnoreCase(getIdField())) {
+                if (!(data instanceof ReflectTableInterface) || ((ReflectTableInterface) data).getId() <= 0) {
+                    return -1;
+                }
+                values[i] = ((ReflectTableInterface) data).getId();
+            } else {
+                Column column = getColumn(keyColumns[i]);
+                if (column == null) {
+                    throw new DBException("Column " + keyColumns[i] + " does not exist in " + getTableName());
+                }
+                ContentValues cv = new ContentValues();
+                mapper.write(cv, column, data);
+                values[i] = cv.get(column.getName());
+            }
+            if (values[i] == null) {
+                return -1;
+            }
+        }
+        TableStatement lookup = getStatementPlan().getLookup(keyColumns);
+        try {
+            synchronized (lookup) {
+                SQLiteStatement statement = lookup.get(database.getDatabase());
+                for (int i = 0; i < values.length; i++) {
+                    FieldAccessor.bindObject(statement, i + 1, values[i]);
+                }
+                return statement.simpleQueryForLong();
+            }
+        } catch (SQLiteException e) {
+            Logger.error(e.getMessage(), e);
+            throw new DBException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Update the entry with the given key. Uses the compiled update statement when the mapper allows it.
+     * Nested table ids are not changed.
+     * @param database
+     * @param data
+     * @param key
+     * @param mapper
+     * @return # of items updated
+     */
     @Override
-    public void deleteAllEntries(Database database) throws DBException {
-        List<? extends T> allEntries = getAllEntries(database, (Class<? extends T>) type.getClass(), getMapper());
-        List<Field> reflectfields = getReflectFields();
-        for (Field reflectfield : reflectfields) {
-            ReflectTable subTable = (ReflectTable) database.getTable(reflectfield.getType().getSimpleName());
-            reflectfield.setAccessible(true);
-            for (T allEntry : allEntries) {
-                T fieldData = (T) UtilReflector.getField(allEntry, reflectfield.getName());
-                if (fieldData != null) {
-                    String[] whereArgs = new String[1];
-                    whereArgs[0] = String.valueOf(((ReflectTableInterface) fieldData).getId());
-                    try {
-                        database.getDatabase().delete(subTable.getTableName(), "_id=?", whereArgs);
-                    } catch (SQLiteException e) {
-                        Logger.error(this, e.getMessage());
+    public long updateEntry(Database database, T data, Object key, DataMapper<T> mapper) throws DBException {
+        if (tracked && data instanceof ChangeTracked) {
+            return updateChanged(database, data, key, mapper);
+        }
+        return updateRow(database, data, key, mapper);
+    }
+
+    private long updateRow(Database database, T data, Object key, DataMapper<T> mapper) throws DBException {
+        RowUpdate update = isStatementMapper(mapper) ? getStatementPlan().getRowUpdate(mapper) : null;
+        if (update == null) {
+            return super.updateEntry(database, data, key, mapper);
+        }
+        try {
+            synchronized (update.statement) {
+                SQLiteStatement statement = update.statement.get(database.getDatabase());
+                update.bind(statement, data);
+                FieldAccessor.bindObject(statement, update.columnCount + 1, key);
+                return statement.executeUpdateDelete();
+            }
+        } catch (SQLiteException e) {
+            Logger.error(e.getMessage(), e);
+            throw new DBException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Update only the columns that changed since the snapshot. Without a snapshot every column is written.
+     * Nothing is written if nothing changed
+     * @return # of items updated. 1 if nothing changed
+     */
+    private long updateChanged(Database database, T data, Object key, DataMapper<T> mapper) throws DBException {
+        ChangeTracked trackedData = (ChangeTracked) data;
+        StatementPlan plan = getStatementPlan();
+        Object[] previous = trackedData.getSnapshot();
+        Object[] current = snapshot(data, mapper, plan);
+        if (previous == null || previous.length != current.length) {
+            long updated = updateRow(database, data, key, mapper);
+            if (updated > 0) {
+                trackWrite(database, data, current);
+            }
+            return updated;
+        }
+        int[] changed = new int[current.length];
+        int count = 0;
+        for (int i = 0; i < current.length; i++) {
+            if (previous[i] == null ? current[i] != null : !previous[i].equals(current[i])) {
+                changed[count++] = i;
+            }
+        }
+        if (count == 0) {
+            return 1;
+        }
+        Column[] changedColumns = new Column[count];
+        for (int i = 0; i < count; i++) {
+            changedColumns[i] = plan.bindColumns[changed[i]];
+        }
+        TableStatement update = plan.getUpdate(changedColumns);
+        try {
+            synchronized (update) {
+                SQLiteStatement statement = update.get(database.getDatabase());
+                for (int i = 0; i < count; i++) {
+                    FieldAccessor.bindObject(statement, i + 1, current[changed[i]]);
+                }
+                FieldAccessor.bindObject(statement, count + 1, key);
+                long updated = statement.executeUpdateDelete();
+                if (updated > 0) {
+                    trackWrite(database, data, current);
+                }
+                return updated;
+            }
+        } catch (SQLiteException e) {
+            Logger.error(e.getMessage(), e);
+            throw new DBException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Keep a snapshot of the values just written if the model tracks changes. If the transaction or
+     * savepoint is rolled back the snapshot is cleared, so the next update writes every column
+     */
+    private void trackWrite(Database database, T data, Object[] snapshot) {
+        if (!tracked || !(data instanceof ChangeTracked)) {
+            return;
+        }
+        final ChangeTracked trackedData = (ChangeTracked) data;
+        trackedData.setSnapshot(snapshot);
+        database.onRollback(new Runnable() {
+            @Override
+            public void run() {
+                trackedData.setSnapshot(null);
+            }
+        });
+    }
+
+    /**
+     * Keep a snapshot of the values just read if the model tracks changes
+     */
+    private void track(T data, DataMapper<T> mapper) {
+        if (tracked && data instanceof ChangeTracked) {
+            ((ChangeTracked) data).setSnapshot(snapshot(data, mapper, getStatementPlan()));
+        }
+    }
+
+    /**
+     * Get the values of the value columns, in statement plan order
+     */
+    private Object[] snapshot(T data, DataMapper<T> mapper, StatementPlan plan) {
+        ContentValues cv = new ContentValues();
+        Object[] values = new Object[plan.bindColumns.length];
+        for (int i = 0; i < values.length; i++) {
+            mapper.write(cv, plan.bindColumns[i], data);
+            values[i] = cv.get(plan.bindColumns[i].getName());
+        }
+        return values;
+    }
+
+    /**
+     * Update a list of entries by id. The update statement is fetched once and rebound for each row.
+     * Call inside a transaction so the rows commit together.
+     * @param database
+     * @param items
+     * @param updateColumns columns to write. Null or empty writes every column. The id, nested table id
+     *                      columns and columns the mapper doesn't write can't be listed
+     * @param mapper
+     * @return number of rows updated
+     */
+    public int updateEntries(Database database, List<? extends T> items, String[] updateColumns, DataMapper<T> mapper)
+            throws DBException {
+        int updated = 0;
+        if (updateColumns == null || updateColumns.length == 0) {
+            // Tracked models go one by one so each only writes its changed columns
+            RowUpdate update = isStatementMapper(mapper) && !tracked ? getStatementPlan().getRowUpdate(mapper) : null;
+            if (update == null) {
+                for (T data : items) {
+                    updated += updateEntry(database, data, getKey(data), mapper);
+                }
+                return updated;
+            }
+            try {
+                synchronized (update.statement) {
+                    SQLiteStatement statement = update.statement.get(database.getDatabase());
+                    for (T data : items) {
+                        statement.clearBindings();
+                        update.bind(statement, data);
+                        FieldAccessor.bindObject(statement, update.columnCount + 1, getKey(data));
+                        updated += statement.executeUpdateDelete();
                     }
                 }
+            } catch (SQLiteException e) {
+                Logger.error(e.getMessage(), e);
+                throw new DBException(e.getMessage(), e);
             }
+            return updated;
         }
-        super.deleteAllEntries(database);
+        StatementPlan plan = getStatementPlan();
+        Column[] subset = new Column[updateColumns.length];
+        for (int i = 0; i < updateColumns.length; i++) {
+            subset[i] = getColumn(updateColumns[i]);
+            if (subset[i] == null || !plan.isWritable(subset[i], mapper)) {
+                throw new DBException("Column " + updateColumns[i] + " can't be updated in " + getTableName());
+            }
+        }
+        TableStatement update = plan.getUpdate(subset);
+        ContentValues cv = new ContentValues();
+        try {
+            synchronized (update) {
+                SQLiteStatement statement = update.get(database.getDatabase());
+                for (T data : items) {
+                    statement.clearBindings();
+                    cv.clear();
+                    for (int i = 0; i < subset.length; i++) {
+                        mapper.write(cv, subset[i], data);
+                        FieldAccessor.bindObject(statement, i + 1, cv.get(subset[i].getName()));
+                    }
+                    FieldAccessor.bindObject(statement, subset.length + 1, getKey(data));
+                    updated += statement.executeUpdateDelete();
+                }
+            }
+        } catch (SQLiteException e) {
+            Logger.error(e.getMessage(), e);
+            throw new DBException(e.getMessage(), e);
+        }
+        return updated;
     }
 
+    /**
+     * Get the id of the entry
+     */
+    private long getKey(T data) throws DBException {
+        if (!(data instanceof ReflectTableInterface)) {
+            throw new DBException("Entries of " + getTableName() + " have no id");
+        }
+        return ((ReflectTableInterface) data).getId();
+    }
 
     @Override
-    public long deleteEntryWhere(Database database, String whereClause, String[] whereArgs) throws DBException {
-        List<? extends T> allEntries = getAllEntriesWhere(database, whereClause, whereArgs, (Class<T>) type.getClass(), getMapper());
-        List<Field> reflectfields = getReflectFields();
-        for (Field reflectfield : reflectfields) {
-            ReflectTable subTable = (ReflectTable) database.getTable(reflectfield.getType().getSimpleName());
-            reflectfield.setAccessible(true);
-            for (T allEntry : allEntries) {
-                T fieldData = (T) UtilReflector.getField(allEntry, reflectfield.getName());
+    protected void columnsChanged() {
+        super.columnsChanged();
+        StatementPlan plan = statementPlan;
+        statementPlan = null;
+        if (plan != null) {
+            plan.close();
+        }
+    }
+
+    /**
+     * Check if rows for this mapper can be bound straight to a compiled statement
+     */
+    private boolean isStatementMapper(DataMapper<T> mapper) {
+        if (mapper != null && mapper == generatedMapper) {
+            return true;
+        }
+        return mapper == this.mapper && getStatementPlan().reflectBindable;
+    }
+
+    /**
+     * Get the compiled statements and bind information for the current columns
+     */
+    private StatementPlan getStatementPlan() {
+        StatementPlan plan = statementPlan;
+        if (plan == null) {
+            plan = new StatementPlan();
+            statementPlan = plan;
+        }
+        return plan;
+    }
+
+    /**
+     * Insert with the compiled insert statement. Nested entries are inserted first so their ids can be bound
+     */
+    private long insertWithStatement(Database database, T data, DataMapper<T> mapper, StatementPlan plan) throws DBException {
+        long[] nestedIds = null;
+        if (plan.nestedFields.length > 0) {
+            nestedIds = new long[plan.nestedFields.length];
+            for (int i = 0; i < plan.nestedFields.length; i++) {
+                nestedIds[i] = -1;
+                Field nestedField = plan.nestedFields[i];
+                Object fieldData = getFieldData(nestedField, data);
                 if (fieldData != null) {
-                    String[] subWhereArgs = new String[1];
-                    subWhereArgs[0] = String.valueOf(((ReflectTableInterface) fieldData).getId());
-                    try {
-                        database.getDatabase().delete(subTable.getTableName(), "_id=?", subWhereArgs);
-                    } catch (SQLiteException e) {
-                        Logger.error(this, e.getMessage());
+                    ReflectTable subTable = (ReflectTable) database.getTable(nestedField.getType().getSimpleName());
+                    nestedIds[i] = subTable.insertEntry(database, fieldData, subTable.getDataMapper());
+                    if (nestedIds[i] == -1) {
+                        Logger.error("Problems inserting " + subTable.getTableName());
                     }
                 }
             }
         }
-        return super.deleteEntryWhere(database, whereClause, whereArgs);
+        try {
+            synchronized (plan.insert) {
+                SQLiteStatement statement = plan.insert.get(database.getDatabase());
+                bindColumns(statement, data, mapper, plan);
+                if (nestedIds != null) {
+                    for (int i = 0; i < nestedIds.length; i++) {
+                        if (nestedIds[i] != -1) {
+                            statement.bindLong(plan.bindColumns.length + i + 1, nestedIds[i]);
+                        }
+                    }
+                }
+                return statement.executeInsert();
+            }
+        } catch (SQLiteException e) {
+            Logger.error(e.getMessage(), e);
+            throw new DBException(e.getMessage(), e);
+        }
     }
 
-    public long deleteEntryWhere(Database database, String columnName, String columnValue) throws DBException {
-        List<? extends T> allEntries = getAllEntriesWhere(database, (Class<T>) type.getClass(), columnName, columnValue, getMapper());
-        List<Field> reflectfields = getReflectFields();
-        for (Field reflectfield : reflectfields) {
-            ReflectTable subTable = (ReflectTable) database.getTable(reflectfield.getType().getSimpleName());
-            reflectfield.setAccessible(true);
-            for (T allEntry : allEntries) {
-                T fieldData = (T) UtilReflector.getField(allEntry, reflectfield.getName());
-                if (fieldData != null) {
-                    String[] subWhereArgs = new String[1];
-                    subWhereArgs[0] = String.valueOf(((ReflectTableInterface) fieldData).getId());
-                    try {
-						database.getDatabase().delete(subTable.getTableName(), "_id=?", subWhereArgs);
-                    } catch (SQLiteException e) {
-                        Logger.error(this, e.getMessage());
+    /**
+     * Bind the model values to positions 1..bindColumns.length. Unbound columns are NULL
+     */
+    private void bindColumns(SQLiteStatement statement, T data, DataMapper<T> mapper, StatementPlan plan) throws DBException {
+        if (mapper == generatedMapper) {
+            generatedMapper.bindRow(statement, plan.generatedPositions, data);
+            return;
+        }
+        try {
+            for (int i = 0; i < plan.accessors.length; i++) {
+                if (plan.accessors[i] != null) {
+                    plan.accessors[i].bind(statement, i + 1, data);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            Logger.error(this, "Problems binding " + getTableName(), e);
+            throw new DBException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Compiled full row update for one mapper. Only the columns the mapper writes are SET, so columns it
+     * can't write (Dates, and for generated mappers Number and Character) keep their values, the same
+     * as the ContentValues update
+     */
+    class RowUpdate {
+        final TableStatement statement;
+        // Number of SET columns. The id is bound after them
+        final int columnCount;
+        // Reflection mapper: accessor for each SET column
+        final FieldAccessor[] accessors;
+        // Generated mapper: SET position for each of getColumnNames(), 0 if it isn't SET
+        final int[] generatedPositions;
+
+        RowUpdate(TableStatement statement, int columnCount, FieldAccessor[] accessors, int[] generatedPositions) {
+            this.statement = statement;
+            this.columnCount = columnCount;
+            this.accessors = accessors;
+            this.generatedPositions = generatedPositions;
+        }
+
+        void bind(SQLiteStatement statement, T data) throws DBException {
+            if (generatedPositions != null) {
+                generatedMapper.bindRow(statement, generatedPositions, data);
+                return;
+            }
+            try {
+                for (int i = 0; i < accessors.length; i++) {
+                    accessors[i].bind(statement, i + 1, data);
+                }
+            } catch (IllegalAccessException e) {
+                Logger.error(ReflectTable.this, "Problems binding " + getTableName(), e);
+                throw new DBException(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Compiled insert and update statements for the current columns. Columns that hold values come first
+     * and nested table id columns last, so both statements share the same bind positions.
+     */
+    class StatementPlan {
+        final Column[] bindColumns;
+        final Field[] nestedFields;
+        final FieldAccessor[] accessors;
+        // Value columns Mapper.write fills in
+        final boolean[] reflectWritable;
+        final int[] generatedPositions;
+        final boolean reflectBindable;
+        final TableStatement insert;
+        // Full row updates. Null if the mapper writes no columns
+        final RowUpdate reflectUpdate;
+        final RowUpdate generatedUpdate;
+        // Upsert lookups and column subset updates by sql
+        final Map<String, TableStatement> statements = new HashMap<String, TableStatement>();
+
+        StatementPlan() {
+            List<Column> valueColumns = new ArrayList<Column>();
+            List<Column> nestedColumns = new ArrayList<Column>();
+            List<Field> nestedFieldList = new ArrayList<Field>();
+            ClassSchema schema = getClassSchema();
+            for (Column column : columns) {
+                if (column.getName().equalsIgnoreCase(getIdField())) {
+                    continue;
+                }
+                Field nestedField = schema.getField(column.getName()) == null ? schema.getReflectField(column.getName()) : null;
+                if (nestedField != null) {
+                    nestedColumns.add(column);
+                    nestedFieldList.add(nestedField);
+                } else {
+                    valueColumns.add(column);
+                }
+            }
+            bindColumns = valueColumns.toArray(new Column[valueColumns.size()]);
+            nestedFields = nestedFieldList.toArray(new Field[nestedFieldList.size()]);
+
+            // The reflection mapper can only be bound if every value field has a typed accessor
+            boolean bindable = true;
+            accessors = new FieldAccessor[bindColumns.length];
+            reflectWritable = new boolean[bindColumns.length];
+            for (int i = 0; i < bindColumns.length; i++) {
+                Field field = schema.getField(bindColumns[i].getName());
+                if (field == null || !AbstractDataMapper.isValidType(field.getType())) {
+                    // Mapper.write skips these so they are always NULL
+                    continue;
+                }
+                reflectWritable[i] = true;
+                accessors[i] = schema.getAccessor(field);
+                if (accessors[i] == null) {
+                    bindable = false;
+                }
+            }
+            reflectBindable = bindable;
+
+            if (generatedMapper != null) {
+                String[] columnNames = generatedMapper.getColumnNames();
+                generatedPositions = new int[columnNames.length];
+                for (int i = 0; i < columnNames.length; i++) {
+                    for (int j = 0; j < bindColumns.length; j++) {
+                        if (bindColumns[j].getName().equals(columnNames[i])) {
+                            generatedPositions[i] = j + 1;
+                            break;
+                        }
+                    }
+                }
+            } else {
+                generatedPositions = null;
+            }
+
+            StringBuilder insertSql = new StringBuilder("INSERT INTO ").append(getTableName()).append(" (");
+            StringBuilder valuesSql = new StringBuilder(") VALUES (");
+            for (int i = 0; i < bindColumns.length; i++) {
+                if (i > 0) {
+                    insertSql.append(", ");
+                    valuesSql.append(", ");
+                }
+                insertSql.append(bindColumns[i].getName());
+                valuesSql.append("?");
+            }
+            for (int i = 0; i < nestedColumns.size(); i++) {
+                if (bindColumns.length > 0 || i > 0) {
+                    insertSql.append(", ");
+                    valuesSql.append(", ");
+                }
+                insertSql.append(nestedColumns.get(i).getName());
+                valuesSql.append("?");
+            }
+            insert = new TableStatement(insertSql.append(valuesSql).append(")").toString());
+
+            List<Column> reflectColumns = new ArrayList<Column>();
+            List<FieldAccessor> reflectAccessors = new ArrayList<FieldAccessor>();
+            for (int i = 0; i < bindColumns.length; i++) {
+                if (accessors[i] != null) {
+                    reflectColumns.add(bindColumns[i]);
+                    reflectAccessors.add(accessors[i]);
+                }
+            }
+            reflectUpdate = reflectColumns.isEmpty() ? null : new RowUpdate(getUpdate(reflectColumns.toArray(new Column[reflectColumns.size()])),
+                    reflectColumns.size(), reflectAccessors.toArray(new FieldAccessor[reflectAccessors.size()]), null);
+
+            RowUpdate rowUpdate = null;
+            if (generatedPositions != null) {
+                List<Column> setColumns = new ArrayList<Column>();
+                int[] setPositions = new int[generatedPositions.length];
+                for (int i = 0; i < generatedPositions.length; i++) {
+                    if (generatedPositions[i] > 0) {
+                        setColumns.add(bindColumns[generatedPositions[i] - 1]);
+                        setPositions[i] = setColumns.size();
                     }
                 }
+                if (!setColumns.isEmpty()) {
+                    rowUpdate = new RowUpdate(getUpdate(setColumns.toArray(new Column[setColumns.size()])), setColumns.size(), null, setPositions);
+                }
             }
+            generatedUpdate = rowUpdate;
         }
+
+        /**
+         * Check if the mapper writes the column. Nested table id columns and columns the mapper skips,
+         * like Dates, are never written
+         */
+        boolean isWritable(Column column, DataMapper<T> mapper) {
+            for (int i = 0; i < bindColumns.length; i++) {
+                if (!bindColumns[i].getName().equalsIgnoreCase(column.getName())) {
+                    continue;
+                }
+                if (mapper != null && mapper == generatedMapper) {
+                    for (int position : generatedPositions) {
+                        if (position == i + 1) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+                return mapper != ReflectTable.this.mapper || reflectWritable[i];
+            }
+            return false;
+        }
+
+        /**
+         * Get the full row update for the mapper
+         * @return RowUpdate or null if the mapper writes no columns
+         */
+        RowUpdate getRowUpdate(DataMapper<T> mapper) {
+            return mapper == generatedMapper ? generatedUpdate : reflectUpdate;
+        }
+
+        /**
+         * Get the statement that finds the id of the row with the given key column values, or -1
+         */
+        TableStatement getLookup(String[] keyColumns) {
+            StringBuilder where = new StringBuilder();
+            for (int i = 0; i < keyColumns.length; i++) {
+                if (i > 0) {
+                    where.append(" AND ");
+                }
+                where.append(keyColumns[i]).append("=?");
+            }
+            return getStatement("SELECT COALESCE((SELECT " + getIdField() + " FROM " + getTableName()
+                    + " WHERE " + where + " LIMIT 1), -1)");
+        }
+
+        /**
+         * Get the statement that updates only the given columns of the row with the given id
+         */
+        TableStatement getUpdate(Column[] updateColumns) {
+            StringBuilder sql = new StringBuilder("UPDATE ").append(getTableName()).append(" SET ");
+            for (int i = 0; i < updateColumns.length; i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append(updateColumns[i].getName()).append("=?");
+            }
+            return getStatement(sql.append(" WHERE ").append(getIdField()).append("=?").toString());
+        }
+
+        TableStatement getStatement(String sql) {
+            synchronized (statements) {
+                TableStatement statement = statements.get(sql);
+                if (statement == null) {
+                    statement = new TableStatement(sql);
+                    statements.put(sql, statement);
+                }
+                return statement;
+            }
+        }
+
+        void close() {
+            synchronized (insert) {
+                insert.close();
+            }
+            synchronized (statements) {
+                for (TableStatement statement : statements.values()) {
+                    synchronized (statement) {
+                        statement.close();
+                    }
+                }
+                statements.clear();
+            }
+        }
+    }
+
+    /**
+     * Read a field that came from the class schema. Those fields are already accessible
+     */
+    private Object getFieldData(Field field, Object data) {
+        try {
+            return field.get(data);
+        } catch (IllegalAccessException e) {
+            Logger.error(this, "Problems reading field " + field.getName(), e);
+        }
+        return null;
+    }
+
+    @Override
+    public void deleteAllEntries(Database database) throws DBException {
+        deleteSubEntries(database, null, null);
+        super.deleteAllEntries(database);
+    }
+
+
+    @Override
+    public long deleteEntryWhere(Database database, String whereClause, String[] whereArgs) throws DBException {
+        deleteSubEntries(database, whereClause, whereArgs);
+        return super.deleteEntryWhere(database, whereClause, whereArgs);
+    }
+
+    public long deleteEntryWhere(Database database, String columnName, String columnValue) throws DBException {
+        deleteSubEntries(database, columnName + "=?", new String[] { columnValue });
         return super.deleteEntryWhere(database, columnName, columnValue);
 
     }
 
+    /**
+     * Delete the entries with the given ids. Deletes run in chunks that fit SQLite's bind variable limit
+     * and nothing is loaded into memory. Call inside a transaction so the chunks commit together.
+     * @param database
+     * @param ids
+     * @return number of entries deleted
+     */
+    public long deleteEntries(Database database, long[] ids) throws DBException {
+        long deleted = 0;
+        for (int start = 0; start < ids.length; start += MAX_BIND_ARGS) {
+            int count = Math.min(MAX_BIND_ARGS, ids.length - start);
+            StringBuilder whereClause = new StringBuilder(getIdField()).append(" IN (");
+            String[] whereArgs = new String[count];
+            for (int i = 0; i < count; i++) {
+                whereClause.append(i == 0 ? "?" : ",?");
+                whereArgs[i] = String.valueOf(ids[start + i]);
+            }
+            deleted += deleteEntryWhere(database, whereClause.append(")").toString(), whereArgs);
+        }
+        return deleted;
+    }
+
+    /**
+     * Delete the sub table rows of the entries that match the where clause. Each sub table is cleared with
+     * one statement that selects the ids from this table, so the entries are never loaded
+     */
+    private void deleteSubEntries(Database database, String whereClause, String[] whereArgs) {
+        for (Field reflectfield : getReflectFields()) {
+            ReflectTable subTable = (ReflectTable) database.getTable(reflectfield.getType().getSimpleName());
+            if (subTable == null) {
+                continue;
+            }
+            StringBuilder subWhere = new StringBuilder(subTable.getIdField()).append(" IN (SELECT ")
+                    .append(reflectfield.getName()).append("_id FROM ").append(getTableName());
+            if (whereClause != null) {
+                subWhere.append(" WHERE ").append(whereClause);
+            }
+            try {
+                database.getDatabase().delete(subTable.getTableName(), subWhere.append(")").toString(), whereArgs);
+            } catch (SQLiteException e) {
+                Logger.error(this, e.getMessage());
+            }
+        }
+    }
+
 
     /**
      * Mapper class. Get all fields and use the column to get it's type
      */
 	public class Mapper<T> extends AbstractDataMapper<T> {
         Database database;
-		private ArrayList<Field> allFields;
-		private List<Field> reflectFields;
 		private boolean recurse = true;
 
 		public void setDatabase(Database database) {
@@ -238,16 +1051,9 @@ public class ReflectTable<T> extends AbstractTable<T> {
 
 		@Override
 		public void write(ContentValues cv, Column column, T type) {
-			if (allFields == null) {
-				allFields = UtilReflector.getAllFields(type.getClass());
-				allFields = UtilReflector.removeTransient(allFields);
-			}
-			if (reflectFields == null) {
-				reflectFields = getReflectFields();
-			}
-            Field field = getColumnField(allFields, column);
+            Field field = getColumnField(type.getClass(), column);
             if (field == null) {
-				field = getReflectColumnField(reflectFields, column);
+				field = getClassSchema().getReflectField(column.getName());
                 if (field != null) {
                     cv.put(column.getName(), (Long) cv.get(column.getName()));
 					return;
@@ -255,8 +1061,6 @@ public class ReflectTable<T> extends AbstractTable<T> {
                 Logger.error(this, "Field at position " + column.getColumnPosition() + " does not exist");
                 return;
             }
-			field.setAccessible(true);
-
 			// Need to skip ID
 			if (column.getName().equalsIgnoreCase(ID)) {
 				return;
@@ -265,6 +1069,15 @@ public class ReflectTable<T> extends AbstractTable<T> {
                 Logger.debug("Invalid object of type " + field.getType());
                 return;
             }
+			FieldAccessor accessor = getClassSchema().getAccessor(field);
+			if (accessor != null) {
+				try {
+					accessor.write(cv, column.getName(), type);
+				} catch (IllegalAccessException e) {
+					Logger.error(this, "Problems mapping column " + column.getName(), e);
+				}
+				return;
+			}
 			switch (column.getType()) {
 				case TEXT:
 					try {
@@ -325,18 +1138,10 @@ public class ReflectTable<T> extends AbstractTable<T> {
 				Logger.error(this, "Mapper.read: Column " + column.getName() + " does not exist in cursor");
 				return;
 			}
-			if (allFields == null) {
-				allFields = UtilReflector.getAllFields(type.getClass());
-				allFields = UtilReflector.removeTransient(allFields);
-			}
-			if (reflectFields == null) {
-				reflectFields = getReflectFields();
-			}
-			Field field = getColumnField(allFields, column);
+			Field field = getColumnField(type.getClass(), column);
             if (field == null) {
-                field = getReflectColumnField(reflectFields, column);
+                field = getClassSchema().getReflectField(column.getName());
                 if (field != null) {
-                    field.setAccessible(true);
                     long id = cursor.getLong(columnIndex);
                     if (database != null) {
                         ReflectTable subTable = (ReflectTable) database.getTable(field.getType().getSimpleName());
@@ -357,11 +1162,22 @@ public class ReflectTable<T> extends AbstractTable<T> {
                 Logger.error(this, "Field at position " + column.getColumnPosition() + " does not exist");
                 return;
 			}
-			field.setAccessible(true);
             if (!isValidType(field.getType())) {
                 Logger.debug("Invalid object of type " + field.getType());
                 return;
             }
+			readColumn(cursor, columnIndex, column, field, type);
+		}
+
+		/**
+		 * Set the field from the cursor column. The field must already be checked with isValidType
+		 */
+		void readColumn(Cursor cursor, int columnIndex, Column column, Field field, T type) {
+			FieldAccessor accessor = getClassSchema().getAccessor(field);
+			if (accessor != null) {
+				readColumn(cursor, columnIndex, column, accessor, type);
+				return;
+			}
 			switch (column.getType()) {
 				case TEXT:
 					try {
@@ -415,6 +1231,17 @@ public class ReflectTable<T> extends AbstractTable<T> {
 			}
 		}
 
+		/**
+		 * Set the field from the cursor column with a typed accessor
+		 */
+		void readColumn(Cursor cursor, int columnIndex, Column column, FieldAccessor accessor, T type) {
+			try {
+				accessor.read(cursor, columnIndex, type);
+			} catch (IllegalAccessException e) {
+				Logger.error(this, "Problems mapping column " + column.getName(), e);
+			}
+		}
+
         protected Field getReflectColumnField(List<Field> allFields, Column column) {
             for (Field allField : allFields) {
                 String fieldName = allField.getName() + "_id";
@@ -426,6 +1253,92 @@ public class ReflectTable<T> extends AbstractTable<T> {
         }
 	}
 
+    @Override
+    protected RowBinder<T> createRowBinder(Cursor cursor, DataMapper<T> mapper) {
+        RowBinder<T> binder;
+        if (mapper == this.mapper) {
+            binder = new ReflectRowBinder(cursor, columns, this.mapper);
+        } else {
+            binder = super.createRowBinder(cursor, mapper);
+        }
+        if (tracked) {
+            return new TrackingRowBinder(cursor, columns, binder, mapper);
+        }
+        return binder;
+    }
+
+    /**
+     * Takes a snapshot of each row after it is read so later updates can skip unchanged columns
+     */
+    class TrackingRowBinder extends RowBinder<T> {
+        private final RowBinder<T> binder;
+
+        TrackingRowBinder(Cursor cursor, List<Column> columns, RowBinder<T> binder, DataMapper<T> mapper) {
+            super(cursor, columns, mapper);
+            this.binder = binder;
+        }
+
+        @Override
+        public void bind(Cursor cursor, T data) throws DBException {
+            binder.bind(cursor, data);
+            track(data, mapper);
+        }
+    }
+
+    /**
+     * Binder for the reflection mapper. Resolves cursor indexes and fields once so each row is a loop
+     * over arrays. Nested table columns still go through the mapper.
+     */
+    class ReflectRowBinder extends RowBinder<T> {
+        private final Mapper<T> reflectMapper;
+        private final int[] indexes;
+        private final Field[] fields;
+        private final FieldAccessor[] accessors;
+
+        ReflectRowBinder(Cursor cursor, List<Column> columns, Mapper<T> mapper) {
+            super(cursor, columns, mapper);
+            reflectMapper = mapper;
+            indexes = new int[this.columns.length];
+            ClassSchema schema = getClassSchema();
+            fields = schema.getColumnFields(columns);
+            accessors = new FieldAccessor[fields.length];
+            for (int i = 0; i < this.columns.length; i++) {
+                Column column = this.columns[i];
+                indexes[i] = cursor.getColumnIndex(column.getName());
+                if (indexes[i] == -1) {
+                    Logger.error(this, "ReflectRowBinder: Column " + column.getName() + " does not exist in cursor");
+                    continue;
+                }
+                if (fields[i] != null && !AbstractDataMapper.isValidType(fields[i].getType())) {
+                    Logger.debug("Invalid object of type " + fields[i].getType());
+                    indexes[i] = -1;
+                }
+                if (fields[i] != null) {
+                    accessors[i] = schema.getAccessor(fields[i]);
+                }
+            }
+        }
+
+        @Override
+        public void bind(Cursor cursor, T data) throws DBException {
+            for (int i = 0; i < columns.length; i++) {
+                if (indexes[i] == -1) {
+                    continue;
+                }
+                if (fields[i] == null) {
+                    // Nested table or missing field
+                    reflectMapper.read(cursor, columns[i], data);
+                    continue;
+                }
+                if (accessors[i] != null) {
+                    reflectMapper.readColumn(cursor, indexes[i], columns[i], accessors[i], data);
+                } else {
+                    reflectMapper.readColumn(cursor, indexes[i], columns[i], fields[i], data);
+                }
+            }
+        }
+    }
+
 	@Override
 	public String toString() {
 		return "ReflectTable{" +
@@ -8,11 +8,22 @@ import android.os.CancellationSignal;
 import com.mastertechsoftware.easysqllibrary.sql.upgrade.UpgradeStrategy;
 import com.mastertechsoftware.logging.Logger;
 
-import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 /**
  * Hold all the pieces needed for Handling a reflection db.
  */
@@ -22,8 +33,19 @@ public class ReflectionDBHelper {
     protected Database database;
     protected BaseDatabaseHelper databaseHelper;
     protected Map<Class, Integer> classMapper = new HashMap<Class, Integer>();
+    // Direct lookups so calls don't go through the position list or scan table names
+    protected Map<Class, CRUDHelper<ReflectTableInterface>> typeHelpers = new ConcurrentHashMap<Class, CRUDHelper<ReflectTableInterface>>();
+    protected Map<String, CRUDHelper<ReflectTableInterface>> nameHelpers = new ConcurrentHashMap<String, CRUDHelper<ReflectTableInterface>>();
 	protected boolean debugging = false;
 	protected int version = 1;
+	// Lazy mode: tables are built and the database created on first use
+	protected List<Class<? extends ReflectTableInterface>> pendingTypes;
+	protected volatile boolean prepared = true;
+	// Executors for the async calls. Writes default to the database thread, reads to a shared pool
+	protected volatile Executor writeExecutor;
+	protected volatile Executor readExecutor;
+	protected volatile WriteBehindQueue writeBehind;
+	private static ExecutorService sharedReadExecutor;
 
 	/**
 	 * Constructor
@@ -34,12 +56,32 @@ public class ReflectionDBHelper {
 	 * @param types
 	 */
 	public ReflectionDBHelper(Context context, String dbName, String mainTableName, int version, Class<? extends ReflectTableInterface>... types) {
+		this(context, dbName, mainTableName, version, false, types);
+	}
+
+	/**
+	 * Constructor. In lazy mode nothing is built or opened until the helper is first used or prepare() is called.
+	 * The first use then builds the tables and creates the database.
+	 * @param context
+	 * @param dbName
+	 * @param mainTableName
+	 * @param version
+	 * @param lazy
+	 * @param types
+	 */
+	public ReflectionDBHelper(Context context, String dbName, String mainTableName, int version, boolean lazy,
+							  Class<? extends ReflectTableInterface>... types) {
 		Logger.setDebug(ReflectionDBHelper.class.getSimpleName(), debugging);
 		this.version = version;
 		databaseHelper = new BaseDatabaseHelper(context, dbName, mainTableName, version);
 		database = new Database();
 		database.setVersion(version);
 		databaseHelper.setLocalDatabase(database);
+		if (lazy) {
+			pendingTypes = new ArrayList<Class<? extends ReflectTableInterface>>(Arrays.asList(types));
+			prepared = false;
+			return;
+		}
  		for (Class<? extends ReflectTableInterface> reflectClass : types) {
 			addTable(reflectClass);
 		}
@@ -62,15 +104,113 @@ public class ReflectionDBHelper {
 	 * @return version
 	 */
 	public int getCurrentVersion() {
+		prepare();
 		return databaseHelper.getDBVersion();
 	}
 
 	/**
-	 * Set the upgrade strategy
+	 * Set the upgrade strategy. The upgrade runs now, so in lazy mode the tables are built first and
+	 * the database is created after the upgrade
 	 * @param upgradeStrategy
 	 */
 	public void setUpgradeStrategy(UpgradeStrategy upgradeStrategy) {
+		buildTables();
 		databaseHelper.setUpgradeStrategy(upgradeStrategy);
+		prepare();
+	}
+
+	/**
+	 * Keep the database open between calls, closing it after it has been idle for the given time
+	 * @param idleTimeout 0 to close after every call (the default), -1 to never close
+	 * @param unit
+	 */
+	public void setKeepAlive(long idleTimeout, TimeUnit unit) {
+		databaseHelper.setKeepAlive(idleTimeout, unit);
+	}
+
+	/**
+	 * Turn write-ahead logging on so reads don't wait for writes. Best set before the database is opened
+	 * @param enabled
+	 */
+	public void setWriteAheadLogging(boolean enabled) {
+		databaseHelper.setWriteAheadLogging(enabled);
+	}
+
+	/**
+	 * Set the number of read only connections used for queries when write-ahead logging is on
+	 * @param size 0 to run all queries on the main connection
+	 */
+	public void setReadPoolSize(int size) {
+		databaseHelper.setReadPoolSize(size);
+	}
+
+	/**
+	 * Build the tables and create the database if this helper was created in lazy mode.
+	 * Does nothing if it is already prepared.
+	 */
+	public void prepare() {
+		if (prepared) {
+			return;
+		}
+		synchronized (this) {
+			if (prepared) {
+				return;
+			}
+			buildTables();
+			try {
+				databaseHelper.createDatabase();
+			} catch (DBException e) {
+				Logger.error(this, "Problems creating database", e);
+			}
+			prepared = true;
+		}
+	}
+
+	/**
+	 * Build the tables of a lazy helper without opening the database
+	 */
+	private synchronized void buildTables() {
+		if (pendingTypes == null) {
+			return;
+		}
+		for (Class<? extends ReflectTableInterface> reflectClass : pendingTypes) {
+			addTable(reflectClass);
+		}
+		pendingTypes = null;
+	}
+
+	/**
+	 * Prepare the helper on the database thread so the first real call doesn't pay for it
+	 * @return true if the task was queued
+	 */
+	public boolean prewarm() {
+		if (prepared) {
+			return true;
+		}
+		return databaseHelper.executeTask(new Runnable() {
+			@Override
+			public void run() {
+				prepare();
+			}
+		});
+	}
+
+	/**
+	 * Return true once the tables are built
+	 * @return prepared
+	 */
+	public boolean isPrepared() {
+		return prepared;
+	}
+
+	/**
+	 * Get the CRUDHelper position for the class
+	 * @param type
+	 * @return position or null if the class is not a table
+	 */
+	protected Integer getPosition(Class type) {
+		prepare();
+		return classMapper.get(type);
 	}
 
 	/**
@@ -78,6 +218,10 @@ public class ReflectionDBHelper {
 	 * @param reflectClass
 	 */
     private void addTable(Class<? extends ReflectTableInterface> reflectClass) {
+        // Nested tables can be shared. Don't build the table again if it was already added
+        if (classMapper.containsKey(reflectClass)) {
+            return;
+        }
         try {
             ReflectTable<ReflectTableInterface> table = new ReflectTable<ReflectTableInterface>(reflectClass.newInstance(), database);
 			table.setVersion(version);
@@ -87,9 +231,10 @@ public class ReflectionDBHelper {
                 classMapper.put(reflectClass, crudHelpers.size()); // Do this before adding so it's zero based
                 CRUDHelper<ReflectTableInterface> crudHelper = new CRUDHelper<>(table, databaseHelper);
                 crudHelpers.add(crudHelper);
-                List<Field> reflectFields = table.getReflectFields();
-                for (Field reflectField : reflectFields) {
-                    addTable(((Class<? extends ReflectTableInterface>) reflectField.getType()));
+                typeHelpers.put(reflectClass, crudHelper);
+                nameHelpers.put(table.getTableName().toLowerCase(Locale.US), crudHelper);
+                for (Class<? extends ReflectTableInterface> reflectType : table.getReflectTypes()) {
+                    addTable(reflectType);
                 }
             }
         } catch (InstantiationException e) {
@@ -120,6 +265,7 @@ public class ReflectionDBHelper {
 	 * @return
 	 */
     public Database getDatabase() {
+        prepare();
         return database;
     }
 
@@ -137,6 +283,7 @@ public class ReflectionDBHelper {
 	 * @return
 	 */
     public CRUDHelper<ReflectTableInterface> getCrudHelper(int position) {
+        prepare();
         return crudHelpers.get(position);
     }
 
@@ -146,18 +293,68 @@ public class ReflectionDBHelper {
 	 * @return
 	 */
     public CRUDHelper<ReflectTableInterface> getCrudHelper(String tableName) {
-        for (CRUDHelper<ReflectTableInterface> crudHelper : crudHelpers) {
-            if (crudHelper.getTable().getTableName().equalsIgnoreCase(tableName)) {
-                return crudHelper;
-            }
+        prepare();
+        return nameHelpers.get(tableName.toLowerCase(Locale.US));
+    }
+
+	/**
+	 * Get the CRUDHelper for the class
+	 * @param type
+	 * @return CRUDHelper or null if the class is not a table
+	 */
+    public CRUDHelper<ReflectTableInterface> getCrudHelper(Class<? extends ReflectTableInterface> type) {
+        prepare();
+        return typeHelpers.get(type);
+    }
+
+	/**
+	 * Get a typed handle for the class. Resolve it once and keep it to skip the lookups on every call
+	 * @param type
+	 * @return TableHandle or null if the class is not a table
+	 */
+    public <T extends ReflectTableInterface> TableHandle<T> table(Class<T> type) {
+        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+        if (crudHelper == null) {
+            Logger.error("Type " + type.getName() + " Not found");
+            return null;
         }
-        return null;
+        return new TableHandle<T>(type, crudHelper, this);
     }
 
 	/**
-	 * Delete the entire database
+	 * Stream the items that match the where clause. Rows are read as the subscriber requests them,
+	 * each subscriber on its own thread
+	 * @param type
+	 * @param whereClause null for all items
+	 * @param whereArgs
+	 * @return Publisher or null if the class is not a table
+	 */
+	public <T extends ReflectTableInterface> Publisher<T> publish(Class<T> type, String whereClause, String[] whereArgs) {
+		return publish(type, whereClause, whereArgs, null);
+	}
+
+	/**
+	 * Stream the items that match the where clause. Rows are read as the subscriber requests them
+	 * @param type
+	 * @param whereClause null for all items
+	 * @param whereArgs
+	 * @param executor runs each subscriber's query and is blocked while waiting for requests. Null for a thread per subscriber
+	 * @return Publisher or null if the class is not a table
+	 */
+	public <T extends ReflectTableInterface> Publisher<T> publish(Class<T> type, String whereClause, String[] whereArgs, Executor executor) {
+		CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+		if (crudHelper == null) {
+			Logger.error("Type " + type.getName() + " Not found");
+			return null;
+		}
+		return new QueryPublisher<T>(crudHelper, type, whereClause, whereArgs, executor);
+	}
+
+	/**
+	 * Delete the entire database. The tables of a lazy helper are built so the next use recreates them
 	 */
     public void deleteDatabase() {
+        buildTables();
         try {
             databaseHelper.dropDatabase();
         } catch (DBException e) {
@@ -172,6 +369,7 @@ public class ReflectionDBHelper {
 	 * @throws DBException
 	 */
 	public void deletePrimaryKey(String table) {
+		prepare();
 		try {
 			databaseHelper.deletePrimaryKey(table);
 		} catch (DBException e) {
@@ -186,6 +384,7 @@ public class ReflectionDBHelper {
 	 * @throws DBException
 	 */
 	public void setPrimaryKey(String table, int startingId) {
+		prepare();
 		try {
 			databaseHelper.setPrimaryKey(table, startingId);
 		} catch (DBException e) {
@@ -200,30 +399,221 @@ public class ReflectionDBHelper {
 	 * @return new position
 	 */
     public long addItem(Class<? extends ReflectTableInterface> type, ReflectTableInterface data) {
-        Integer position = classMapper.get(type);
-        if (position == null) {
+        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+        if (crudHelper == null) {
             Logger.error("Type " + type.getName() + " Not found");
             return -1;
         }
-        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(position);
-        return crudHelper.addItem(data);
+        return addItem(crudHelper, data);
     }
 
+	/**
+	 * Add a single item through the write behind queue if there is one
+	 * @param crudHelper
+	 * @param item
+	 * @return new position
+	 */
+	protected long addItem(final CRUDHelper<ReflectTableInterface> crudHelper, final ReflectTableInterface item) {
+		WriteBehindQueue queue = getWriteQueue();
+		if (queue != null) {
+			// Callers need the id, so always wait for the commit
+			Long id = waitForWrite(queue.submit(new Callable<Long>() {
+				@Override
+				public Long call() throws Exception {
+					return crudHelper.addItem(item);
+				}
+			}, null), true);
+			return id != null ? id : -1;
+		}
+		return crudHelper.addItem(item);
+	}
+
+	/**
+	 * Add a list of items in one transaction, reusing the compiled insert statement. The new ids
+	 * are set on the items
+	 * @param type
+	 * @param items
+	 * @return new ids in list order (-1 for items that failed) or null on error
+	 */
+	public long[] addItems(Class<? extends ReflectTableInterface> type, List<? extends ReflectTableInterface> items) {
+		CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+		if (crudHelper == null) {
+			Logger.error("Type " + type.getName() + " Not found");
+			return null;
+		}
+		return addItems(crudHelper, items);
+	}
+
+	/**
+	 * Add a list of items through the write behind queue if there is one
+	 * @param crudHelper
+	 * @param items
+	 * @return new ids in list order (-1 for items that failed) or null on error
+	 */
+	protected long[] addItems(final CRUDHelper<ReflectTableInterface> crudHelper, final List<? extends ReflectTableInterface> items) {
+		WriteBehindQueue queue = getWriteQueue();
+		if (queue != null) {
+			// Keep the order of queued writes. The list joins the batch transaction
+			return waitForWrite(queue.submit(new Callable<long[]>() {
+				@Override
+				public long[] call() throws Exception {
+					return crudHelper.addItems(items);
+				}
+			}, null), true);
+		}
+		return crudHelper.addItems(items);
+	}
+
+	/**
+	 * Insert the item, or update the row with the same values in the conflict columns
+	 * @param type
+	 * @param data
+	 * @param conflictColumns none uses the unique columns, or the id if there are none
+	 * @return id of the inserted or updated row. -1 on error
+	 */
+	public long upsert(Class<? extends ReflectTableInterface> type, ReflectTableInterface data, String... conflictColumns) {
+		CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+		if (crudHelper == null) {
+			Logger.error("Type " + type.getName() + " Not found");
+			return -1;
+		}
+		return upsert(crudHelper, data, conflictColumns);
+	}
+
+	/**
+	 * Upsert an item through the write behind queue if there is one
+	 * @param crudHelper
+	 * @param data
+	 * @param conflictColumns
+	 * @return id of the inserted or updated row. -1 on error
+	 */
+	protected long upsert(final CRUDHelper<ReflectTableInterface> crudHelper, final ReflectTableInterface data,
+						  final String... conflictColumns) {
+		WriteBehindQueue queue = getWriteQueue();
+		if (queue != null) {
+			// Callers need the id, so always wait for the commit
+			Long id = waitForWrite(queue.submit(new Callable<Long>() {
+				@Override
+				public Long call() throws Exception {
+					return crudHelper.upsert(data, conflictColumns);
+				}
+			}, null), true);
+			return id != null ? id : -1;
+		}
+		return crudHelper.upsert(data, conflictColumns);
+	}
+
+	/**
+	 * Upsert a list of items in one transaction
+	 * @param type
+	 * @param items
+	 * @param conflictColumns none uses the unique columns, or the id if there are none
+	 * @return ids in list order (-1 for items that failed) or null on error
+	 */
+	public long[] upsertAll(Class<? extends ReflectTableInterface> type, List<? extends ReflectTableInterface> items,
+							String... conflictColumns) {
+		CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+		if (crudHelper == null) {
+			Logger.error("Type " + type.getName() + " Not found");
+			return null;
+		}
+		return upsertAll(crudHelper, items, conflictColumns);
+	}
+
+	/**
+	 * Upsert a list of items through the write behind queue if there is one
+	 * @param crudHelper
+	 * @param items
+	 * @param conflictColumns
+	 * @return ids in list order (-1 for items that failed) or null on error
+	 */
+	protected long[] upsertAll(final CRUDHelper<ReflectTableInterface> crudHelper, final List<? extends ReflectTableInterface> items,
+							   final String... conflictColumns) {
+		WriteBehindQueue queue = getWriteQueue();
+		if (queue != null) {
+			return waitForWrite(queue.submit(new Callable<long[]>() {
+				@Override
+				public long[] call() throws Exception {
+					return crudHelper.upsertAll(items, conflictColumns);
+				}
+			}, null), true);
+		}
+		return crudHelper.upsertAll(items, conflictColumns);
+	}
+
+	/**
+	 * Update a list of items by id in one transaction, reusing one compiled update statement
+	 * @param type
+	 * @param items
+	 * @param columns columns to write. None writes every column
+	 * @return number of rows updated or -1 on error
+	 */
+	public int updateAll(Class<? extends ReflectTableInterface> type, List<? extends ReflectTableInterface> items,
+						 String... columns) {
+		CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+		if (crudHelper == null) {
+			Logger.error("Type " + type.getName() + " Not found");
+			return -1;
+		}
+		return updateAll(crudHelper, items, columns);
+	}
+
+	/**
+	 * Update a list of items through the write behind queue if there is one
+	 * @param crudHelper
+	 * @param items
+	 * @param columns
+	 * @return number of rows updated or -1 on error
+	 */
+	protected int updateAll(final CRUDHelper<ReflectTableInterface> crudHelper, final List<? extends ReflectTableInterface> items,
+							final String... columns) {
+		WriteBehindQueue queue = getWriteQueue();
+		if (queue != null) {
+			Integer updated = waitForWrite(queue.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					return crudHelper.updateAll(items, columns);
+				}
+			}, null), true);
+			return updated != null ? updated : -1;
+		}
+		return crudHelper.updateAll(items, columns);
+	}
+
 	/**
 	 * Update a single item
 	 * @param type
 	 * @param data
 	 */
     public void updateItem(Class<? extends ReflectTableInterface> type, ReflectTableInterface data) {
-        Integer position = classMapper.get(type);
-        if (position == null) {
+        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+        if (crudHelper == null) {
             Logger.error("Type " + type.getName() + " Not found");
             return;
         }
-        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(position);
-        crudHelper.updateItem(data, data.getId());
+        updateItem(crudHelper, data);
     }
 
+	/**
+	 * Update a single item through the write behind queue if there is one
+	 * @param crudHelper
+	 * @param item
+	 */
+	protected void updateItem(final CRUDHelper<ReflectTableInterface> crudHelper, final ReflectTableInterface item) {
+		WriteBehindQueue queue = getWriteQueue();
+		if (queue != null) {
+			waitForWrite(queue.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					crudHelper.updateItem(item, item.getId());
+					return null;
+				}
+			}, null), queue.getDurability() == WriteBehindQueue.Durability.COMMIT);
+			return;
+		}
+		crudHelper.updateItem(item, item.getId());
+	}
+
     /**
      * Update a table with the given where clause
      * @param cv
@@ -233,15 +623,37 @@ public class ReflectionDBHelper {
      */
     public long updateEntryWhere(Class<? extends ReflectTableInterface> type, ContentValues cv, String whereClause,
                                 String[] whereArgs) {
-        Integer position = classMapper.get(type);
-        if (position == null) {
+        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+        if (crudHelper == null) {
             Logger.error("Type " + type.getName() + " Not found");
             return -1;
         }
-        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(position);
-        return crudHelper.updateEntryWhere(cv, whereClause, whereArgs);
+        return updateEntryWhere(crudHelper, cv, whereClause, whereArgs);
     }
 
+	/**
+	 * Update with a where clause through the write behind queue if there is one. Waits for the commit
+	 * @param crudHelper
+	 * @param cv
+	 * @param whereClause
+	 * @param whereArgs
+	 * @return result
+	 */
+	protected long updateEntryWhere(final CRUDHelper<ReflectTableInterface> crudHelper, final ContentValues cv,
+									final String whereClause, final String[] whereArgs) {
+		WriteBehindQueue queue = getWriteQueue();
+		if (queue != null) {
+			Long result = waitForWrite(queue.submit(new Callable<Long>() {
+				@Override
+				public Long call() throws Exception {
+					return crudHelper.updateEntryWhere(cv, whereClause, whereArgs);
+				}
+			}, null), true);
+			return result != null ? result : -1;
+		}
+		return crudHelper.updateEntryWhere(cv, whereClause, whereArgs);
+	}
+
 
 	/**
 	 * Delete a single item
@@ -249,15 +661,34 @@ public class ReflectionDBHelper {
 	 * @param id
 	 */
     public void deleteItem(Class<? extends ReflectTableInterface> type, int id) {
-        Integer position = classMapper.get(type);
-        if (position == null) {
+        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+        if (crudHelper == null) {
             Logger.error("Type " + type.getName() + " Not found");
             return;
         }
-        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(position);
-        crudHelper.deleteItem(id);
+        deleteItem(crudHelper, id);
     }
 
+	/**
+	 * Delete a single item through the write behind queue if there is one
+	 * @param crudHelper
+	 * @param id
+	 */
+	protected void deleteItem(final CRUDHelper<ReflectTableInterface> crudHelper, final long id) {
+		WriteBehindQueue queue = getWriteQueue();
+		if (queue != null) {
+			waitForWrite(queue.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					crudHelper.deleteItem(id);
+					return null;
+				}
+			}, null), queue.getDurability() == WriteBehindQueue.Durability.COMMIT);
+			return;
+		}
+		crudHelper.deleteItem(id);
+	}
+
 	/**
 	 * Delete a single item with the given column value
 	 * @param type
@@ -265,44 +696,199 @@ public class ReflectionDBHelper {
 	 * @param columnValue
 	 */
     public void deleteItemWhere(Class<? extends ReflectTableInterface> type, String columnName, String columnValue) {
-        Integer position = classMapper.get(type);
-        if (position == null) {
+        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+        if (crudHelper == null) {
             Logger.error("Type " + type.getName() + " Not found");
             return;
         }
-        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(position);
-        crudHelper.deleteItemWhere(columnName, columnValue);
+        deleteItemWhere(crudHelper, columnName, columnValue);
     }
 
+	/**
+	 * Delete items with the given column value through the write behind queue if there is one
+	 * @param crudHelper
+	 * @param columnName
+	 * @param columnValue
+	 */
+	protected void deleteItemWhere(final CRUDHelper<ReflectTableInterface> crudHelper, final String columnName,
+								   final String columnValue) {
+		WriteBehindQueue queue = getWriteQueue();
+		if (queue != null) {
+			waitForWrite(queue.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					crudHelper.deleteItemWhere(columnName, columnValue);
+					return null;
+				}
+			}, null), queue.getDurability() == WriteBehindQueue.Durability.COMMIT);
+			return;
+		}
+		crudHelper.deleteItemWhere(columnName, columnValue);
+	}
+
+	/**
+	 * Delete the items with the given ids in one transaction without loading them
+	 * @param type
+	 * @param ids
+	 * @return number of items deleted or -1 on error
+	 */
+	public long deleteByIds(Class<? extends ReflectTableInterface> type, long[] ids) {
+		CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+		if (crudHelper == null) {
+			Logger.error("Type " + type.getName() + " Not found");
+			return -1;
+		}
+		return deleteByIds(crudHelper, ids);
+	}
+
+	/**
+	 * Delete items by id through the write behind queue if there is one. Waits for the commit
+	 * @param crudHelper
+	 * @param ids
+	 * @return number of items deleted or -1 on error
+	 */
+	protected long deleteByIds(final CRUDHelper<ReflectTableInterface> crudHelper, final long[] ids) {
+		WriteBehindQueue queue = getWriteQueue();
+		if (queue != null) {
+			Long deleted = waitForWrite(queue.submit(new Callable<Long>() {
+				@Override
+				public Long call() throws Exception {
+					return crudHelper.deleteByIds(ids);
+				}
+			}, null), true);
+			return deleted != null ? deleted : -1;
+		}
+		return crudHelper.deleteByIds(ids);
+	}
+
+	/**
+	 * Delete the items that match the where clause without loading them
+	 * @param type
+	 * @param whereClause needs to use "?" formats
+	 * @param whereArgs
+	 * @return number of items deleted or -1 on error
+	 */
+	public long deleteWhere(Class<? extends ReflectTableInterface> type, String whereClause, String[] whereArgs) {
+		CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+		if (crudHelper == null) {
+			Logger.error("Type " + type.getName() + " Not found");
+			return -1;
+		}
+		return deleteWhere(crudHelper, whereClause, whereArgs);
+	}
+
+	/**
+	 * Delete the items that match the where clause through the write behind queue if there is one.
+	 * Waits for the commit
+	 * @param crudHelper
+	 * @param whereClause
+	 * @param whereArgs
+	 * @return number of items deleted or -1 on error
+	 */
+	protected long deleteWhere(final CRUDHelper<ReflectTableInterface> crudHelper, final String whereClause,
+							   final String[] whereArgs) {
+		WriteBehindQueue queue = getWriteQueue();
+		if (queue != null) {
+			Long deleted = waitForWrite(queue.submit(new Callable<Long>() {
+				@Override
+				public Long call() throws Exception {
+					return crudHelper.deleteWhere(whereClause, whereArgs);
+				}
+			}, null), true);
+			return deleted != null ? deleted : -1;
+		}
+		return crudHelper.deleteWhere(whereClause, whereArgs);
+	}
+
 	/**
 	 * Remove all items for this class
 	 * @param type
 	 */
     public void deleteAllItems(Class<? extends ReflectTableInterface> type) {
-        Integer position = classMapper.get(type);
-        if (position == null) {
+        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+        if (crudHelper == null) {
             Logger.error("Type " + type.getName() + " Not found");
             return;
         }
-        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(position);
-        crudHelper.deleteAllItems();
+        deleteAllItems(crudHelper);
     }
 
+	/**
+	 * Remove all items through the write behind queue if there is one
+	 * @param crudHelper
+	 */
+	protected void deleteAllItems(final CRUDHelper<ReflectTableInterface> crudHelper) {
+		WriteBehindQueue queue = getWriteQueue();
+		if (queue != null) {
+			waitForWrite(queue.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					crudHelper.deleteAllItems();
+					return null;
+				}
+			}, null), queue.getDurability() == WriteBehindQueue.Durability.COMMIT);
+			return;
+		}
+		crudHelper.deleteAllItems();
+	}
+
 	/**
 	 * Get all items for this class
 	 * @param type
 	 * @return
 	 */
     public List<? extends ReflectTableInterface> getAllItems(Class<? extends ReflectTableInterface> type) {
-        Integer position = classMapper.get(type);
-        if (position == null) {
+        return getAllItems(type, null);
+    }
+
+	/**
+	 * Get all items for this class
+	 * @param type
+	 * @param control may be null
+	 * @return
+	 */
+    public List<? extends ReflectTableInterface> getAllItems(Class<? extends ReflectTableInterface> type, QueryControl control) {
+        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+        if (crudHelper == null) {
             Logger.error("Type " + type.getName() + " Not found");
             return null;
         }
-        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(position);
-        return crudHelper.getItems(type);
+        return crudHelper.getItems(type, control);
     }
 
+	/**
+	 * Visit all items of this class that match the where clause, reusing one item for every row
+	 * @param type
+	 * @param whereClause null for all items
+	 * @param whereArgs
+	 * @param visitor
+	 * @return number of items visited or -1 on error
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends ReflectTableInterface> int forEach(Class<T> type, String whereClause, String[] whereArgs, RowVisitor<? super T> visitor) {
+		return forEach(type, whereClause, whereArgs, visitor, null);
+	}
+
+	/**
+	 * Visit all items of this class that match the where clause, reusing one item for every row
+	 * @param type
+	 * @param whereClause null for all items
+	 * @param whereArgs
+	 * @param visitor
+	 * @param control may be null
+	 * @return number of items visited or -1 on error
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends ReflectTableInterface> int forEach(Class<T> type, String whereClause, String[] whereArgs, RowVisitor<? super T> visitor,
+														QueryControl control) {
+		CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+		if (crudHelper == null) {
+			Logger.error("Type " + type.getName() + " Not found");
+			return -1;
+		}
+		return crudHelper.forEach(type, whereClause, whereArgs, (RowVisitor<ReflectTableInterface>) visitor, control);
+	}
+
 	/**
 	 * Get all items for this class and value
 	 * @param type
@@ -311,13 +897,25 @@ public class ReflectionDBHelper {
 	 * @return
 	 */
     public List<? extends ReflectTableInterface> getItemsWhere(Class<? extends ReflectTableInterface> type, String columnName, String columnValue) {
-        Integer position = classMapper.get(type);
-        if (position == null) {
+        return getItemsWhere(type, columnName, columnValue, null);
+    }
+
+	/**
+	 * Get all items for this class and value
+	 * @param type
+	 * @param columnName
+	 * @param columnValue
+	 * @param control may be null
+	 * @return
+	 */
+    public List<? extends ReflectTableInterface> getItemsWhere(Class<? extends ReflectTableInterface> type, String columnName, String columnValue,
+                                                              QueryControl control) {
+        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+        if (crudHelper == null) {
             Logger.error("Type " + type.getName() + " Not found");
             return null;
         }
-        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(position);
-        return crudHelper.getItemsWhere(type, columnName, columnValue);
+        return crudHelper.getItemsWhere(type, columnName, columnValue, control);
     }
 
 	/**
@@ -327,13 +925,24 @@ public class ReflectionDBHelper {
 	 * @return
 	 */
     public List<? extends ReflectTableInterface> getItemsWhere(Class<? extends ReflectTableInterface> type, List<ColumnValue> fields) {
-        Integer position = classMapper.get(type);
-        if (position == null) {
+        return getItemsWhere(type, fields, null);
+    }
+
+	/**
+	 * Get all items where the given list of column/value strings is given in the ClassField list
+	 * @param type
+	 * @param fields
+	 * @param control may be null
+	 * @return
+	 */
+    public List<? extends ReflectTableInterface> getItemsWhere(Class<? extends ReflectTableInterface> type, List<ColumnValue> fields,
+                                                              QueryControl control) {
+        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+        if (crudHelper == null) {
             Logger.error("Type " + type.getName() + " Not found");
             return null;
         }
-        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(position);
-        return crudHelper.getItemsWhere(type, fields);
+        return crudHelper.getItemsWhere(type, fields, control);
     }
 
 	/**
@@ -354,12 +963,11 @@ public class ReflectionDBHelper {
     public Cursor query(Class<? extends ReflectTableInterface> type, boolean distinct, String table, String[] columns,
                         String selection, String[] selectionArgs, String groupBy,
                         String having, String orderBy, String limit) throws DBException {
-        Integer position = classMapper.get(type);
-        if (position == null) {
+        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+        if (crudHelper == null) {
             Logger.error("Type " + type.getName() + " Not found");
             return null;
         }
-        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(position);
         return crudHelper.query(distinct, table, columns, selection, selectionArgs, groupBy, having, orderBy, limit);
     }
 
@@ -383,12 +991,11 @@ public class ReflectionDBHelper {
                         String selection, String[] selectionArgs, String groupBy,
                         String having, String orderBy, String limit, CancellationSignal cancellationSignal) throws DBException {
 
-        Integer position = classMapper.get(type);
-        if (position == null) {
+        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+        if (crudHelper == null) {
             Logger.error("Type " + type.getName() + " Not found");
             return null;
         }
-        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(position);
         return crudHelper.query(distinct, table, columns,
                                 selection, selectionArgs, groupBy,
                                 having, orderBy, limit, cancellationSignal);
@@ -410,12 +1017,11 @@ public class ReflectionDBHelper {
     public Cursor query(Class<? extends ReflectTableInterface> type, String table, String[] columns, String selection,
                         String[] selectionArgs, String groupBy, String having,
                         String orderBy)  throws DBException {
-        Integer position = classMapper.get(type);
-        if (position == null) {
+        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+        if (crudHelper == null) {
             Logger.error("Type " + type.getName() + " Not found");
             return null;
         }
-        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(position);
         return crudHelper.query(table, columns,
                                 selection, selectionArgs, groupBy,
                                 having, orderBy);
@@ -438,12 +1044,11 @@ public class ReflectionDBHelper {
     public Cursor query(Class<? extends ReflectTableInterface> type, String table, String[] columns, String selection,
                         String[] selectionArgs, String groupBy, String having,
                         String orderBy, String limit)  throws DBException {
-        Integer position = classMapper.get(type);
-        if (position == null) {
+        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+        if (crudHelper == null) {
             Logger.error("Type " + type.getName() + " Not found");
             return null;
         }
-        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(position);
         return crudHelper.query(table, columns,
                                 selection, selectionArgs, groupBy,
                                 having, orderBy, limit);
@@ -453,12 +1058,11 @@ public class ReflectionDBHelper {
      * Execute sql statement. Be careful.
      */
     public void execSQL(Class<? extends ReflectTableInterface> type, String sql) throws DBException {
-        Integer position = classMapper.get(type);
-        if (position == null) {
+        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+        if (crudHelper == null) {
             Logger.error("Type " + type.getName() + " Not found");
             return;
         }
-        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(position);
         crudHelper.execSQL(sql);
     }
 
@@ -470,13 +1074,25 @@ public class ReflectionDBHelper {
 	 * @return ReflectTableInterface
 	 */
     public ReflectTableInterface getItem(Class<? extends ReflectTableInterface> type, long id, ReflectTableInterface newItem) {
-        Integer position = classMapper.get(type);
-        if (position == null) {
+        return getItem(type, id, newItem, null);
+	}
+
+	/**
+	 * Get a single item with the given id
+	 * @param type
+	 * @param id
+	 * @param newItem
+	 * @param control may be null
+	 * @return ReflectTableInterface
+	 */
+    public ReflectTableInterface getItem(Class<? extends ReflectTableInterface> type, long id, ReflectTableInterface newItem,
+                                        QueryControl control) {
+        CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+        if (crudHelper == null) {
 			Logger.error("Type " + type.getName() + " Not found");
 			return null;
 		}
-		CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(position);
-		return crudHelper.getItem(id, newItem);
+		return crudHelper.getItem(id, newItem, control);
 	}
 
 	/**
@@ -487,12 +1103,11 @@ public class ReflectionDBHelper {
 	 * @return ReflectTableInterface
 	 */
 	public ReflectTableInterface getItemWhere(Class<? extends ReflectTableInterface> type, String columnName, String columnValue) {
-		Integer position = classMapper.get(type);
-		if (position == null) {
+		CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+		if (crudHelper == null) {
 			Logger.error("Type " + type.getName() + " Not found");
 			return null;
 		}
-		CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(position);
 		try {
 			return crudHelper.getItemWhere(type.newInstance(), columnName, columnValue);
 		} catch (InstantiationException e) {
@@ -508,6 +1123,11 @@ public class ReflectionDBHelper {
 	 * @throws DBException
 	 */
 	public void createDatabase() throws DBException {
+		if (!prepared) {
+			// prepare() builds the tables and creates the database
+			prepare();
+			return;
+		}
 		databaseHelper.createDatabase();
 	}
 
@@ -517,12 +1137,386 @@ public class ReflectionDBHelper {
 	 * @return Table
 	 */
 	public Table getTable(Class<? extends ReflectTableInterface> type) {
-		Integer position = classMapper.get(type);
-		if (position == null) {
+		CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+		if (crudHelper == null) {
 			Logger.error("Type " + type.getName() + " Not found");
 			return null;
 		}
-		CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(position);
 		return crudHelper.getTable();
 	}
+
+	/**
+	 * Set the executor for async writes. Defaults to the single database thread, which keeps writes in order
+	 * @param executor null for the default
+	 */
+	public void setWriteExecutor(Executor executor) {
+		writeExecutor = executor;
+	}
+
+	/**
+	 * Set the executor for async reads. Defaults to a small pool shared by all databases
+	 * @param executor null for the default
+	 */
+	public void setReadExecutor(Executor executor) {
+		readExecutor = executor;
+	}
+
+	/**
+	 * Run the work in one transaction. Adds, updates and deletes for any of this database's classes join
+	 * the transaction instead of committing one by one, and reads in the work see its uncommitted writes.
+	 * If the work throws, or a write in it fails, everything is rolled back.
+	 * Called inside another transaction the work runs in a savepoint, and only its own changes are rolled back.
+	 * The single item calls report failures by return value (-1 or null) rather than throwing, but a
+	 * failed one still marks the transaction, so it is rolled back when the work returns
+	 * @param work
+	 * @throws DBException if the work failed, the transaction was rolled back or could not be started
+	 */
+	public void inTransaction(UnitOfWork work) throws DBException {
+		prepare();
+		if (databaseHelper.isInTransaction()) {
+			inSavepoint(work);
+			return;
+		}
+		WriteBehindQueue queue = writeBehind;
+		if (queue != null && !queue.isWriterThread()) {
+			// Queued writes commit first. The work's own writes skip the queue
+			flush();
+		}
+		databaseHelper.startTransaction();
+		boolean successful = false;
+		try {
+			work.run(this);
+			successful = true;
+		} catch (DBException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new DBException("Transaction rolled back", e);
+		} finally {
+			if (!databaseHelper.endTransaction(successful) && successful) {
+				throw new DBException("Transaction rolled back: a write in it failed");
+			}
+		}
+	}
+
+	/**
+	 * Run the work in a savepoint inside the current transaction. If the work throws, or a write in it
+	 * fails, only its changes are rolled back, so a large import can skip a bad sub-batch and keep going
+	 * @param work
+	 * @throws DBException if the work failed (its changes are already rolled back) or there is no transaction
+	 */
+	protected void inSavepoint(UnitOfWork work) throws DBException {
+		String savepoint = databaseHelper.startSavepoint();
+		boolean successful = false;
+		try {
+			work.run(this);
+			successful = true;
+		} catch (DBException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new DBException("Savepoint rolled back", e);
+		} finally {
+			if (!databaseHelper.endSavepoint(savepoint, successful) && successful) {
+				throw new DBException("Savepoint rolled back: a write in it failed");
+			}
+		}
+	}
+
+	/**
+	 * Run the work in a savepoint and report instead of throwing. Use inside inTransaction to skip
+	 * sub-batches that throw or have a failed write. Outside a transaction the work gets its own transaction
+	 * @param work
+	 * @return true if the work was kept, false if it was rolled back
+	 */
+	public boolean tryInTransaction(UnitOfWork work) {
+		try {
+			inTransaction(work);
+			return true;
+		} catch (DBException e) {
+			Logger.error(this, "Rolled back failed work", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Queue writes and commit them in batches. Every add, update and delete call, on this helper or its
+	 * table handles, and the async writes go through the queue. Writes in a transaction or made while
+	 * reading run directly. Replaces any existing queue after committing it
+	 * @param maxBatchSize most writes in one transaction
+	 * @param maxDelay longest a write waits for others to join its batch
+	 * @param unit
+	 * @param durability whether updates and deletes wait for the commit. addItem always waits for its id
+	 */
+	public synchronized void enableWriteBehind(int maxBatchSize, long maxDelay, TimeUnit unit, WriteBehindQueue.Durability durability) {
+		prepare();
+		WriteBehindQueue old = writeBehind;
+		writeBehind = new WriteBehindQueue(databaseHelper, maxBatchSize, maxDelay, unit, durability);
+		if (old != null) {
+			old.shutdown();
+		}
+	}
+
+	/**
+	 * Commit anything queued and go back to writing directly
+	 */
+	public synchronized void disableWriteBehind() {
+		WriteBehindQueue old = writeBehind;
+		writeBehind = null;
+		if (old != null) {
+			old.shutdown();
+		}
+	}
+
+	/**
+	 * Return the write behind queue, for its batch counts
+	 * @return WriteBehindQueue or null if writes go directly to the database
+	 */
+	public WriteBehindQueue getWriteBehind() {
+		return writeBehind;
+	}
+
+	/**
+	 * Wait until every queued write has committed. Does nothing without a write behind queue
+	 */
+	public void flush() {
+		WriteBehindQueue queue = writeBehind;
+		if (queue == null) {
+			return;
+		}
+		try {
+			queue.flush();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Return the queue a write from this thread should go through
+	 * @return WriteBehindQueue or null to write directly. Writes already in a batch or a transaction run directly,
+	 * as do writes made while this thread is reading (a visitor writing back) after the queue is flushed
+	 */
+	protected WriteBehindQueue getWriteQueue() {
+		WriteBehindQueue queue = writeBehind;
+		if (queue == null || queue.isWriterThread() || databaseHelper.isInTransaction()) {
+			return null;
+		}
+		if (databaseHelper.isReading()) {
+			flush();
+			return null;
+		}
+		return queue;
+	}
+
+	/**
+	 * Wait for a queued write if needed
+	 * @param future
+	 * @param wait false to return right away
+	 * @return result or null if not waiting or the write failed
+	 */
+	protected <R> R waitForWrite(Future<R> future, boolean wait) {
+		if (!wait) {
+			return null;
+		}
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Logger.error(this, "Problems writing item", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return null;
+	}
+
+	/**
+	 * Run a write on the write executor
+	 * @param callable
+	 * @param callback may be null
+	 * @return Future
+	 */
+	public <R> Future<R> submitWrite(Callable<R> callable, DBCallback<? super R> callback) {
+		WriteBehindQueue queue = writeBehind;
+		if (queue != null) {
+			return queue.submit(callable, callback);
+		}
+		Executor executor = writeExecutor;
+		return DBFuture.submit(executor != null ? executor : databaseHelper.mExecutor, callable, callback);
+	}
+
+	/**
+	 * Run a read on the read executor
+	 * @param callable
+	 * @param callback may be null
+	 * @return Future
+	 */
+	public <R> Future<R> submitRead(Callable<R> callable, DBCallback<? super R> callback) {
+		Executor executor = readExecutor;
+		return DBFuture.submit(executor != null ? executor : getSharedReadExecutor(), callable, callback);
+	}
+
+	/**
+	 * Get all items for this class on the read executor
+	 * @param type
+	 * @param callback may be null
+	 * @return Future
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends ReflectTableInterface> Future<List<T>> getAllItemsAsync(final Class<T> type, DBCallback<? super List<T>> callback) {
+		return submitRead(new Callable<List<T>>() {
+			@Override
+			public List<T> call() throws Exception {
+				return (List<T>) requireCrudHelper(type).getItems(type);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Get a single item with the given id on the read executor
+	 * @param type
+	 * @param id
+	 * @param callback may be null
+	 * @return Future. The result is null if not found
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends ReflectTableInterface> Future<T> getItemAsync(final Class<T> type, final long id, DBCallback<? super T> callback) {
+		return submitRead(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				return (T) requireCrudHelper(type).getItem(id, type.newInstance());
+			}
+		}, callback);
+	}
+
+	/**
+	 * Get all items with the given value on the read executor
+	 * @param type
+	 * @param columnName
+	 * @param columnValue
+	 * @param callback may be null
+	 * @return Future
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends ReflectTableInterface> Future<List<T>> getItemsWhereAsync(final Class<T> type, final String columnName,
+																			   final String columnValue, DBCallback<? super List<T>> callback) {
+		return submitRead(new Callable<List<T>>() {
+			@Override
+			public List<T> call() throws Exception {
+				return (List<T>) requireCrudHelper(type).getItemsWhere(type, columnName, columnValue);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Add a single item on the write executor
+	 * @param type
+	 * @param data
+	 * @param callback may be null
+	 * @return Future with the id of the new item
+	 */
+	public <T extends ReflectTableInterface> Future<Long> addItemAsync(final Class<T> type, final T data, DBCallback<? super Long> callback) {
+		return submitWrite(new Callable<Long>() {
+			@Override
+			public Long call() throws Exception {
+				long id = requireCrudHelper(type).addItem(data);
+				if (id == -1) {
+					throw new DBException("Problems adding " + type.getName());
+				}
+				return id;
+			}
+		}, callback);
+	}
+
+	/**
+	 * Add a list of items on the write executor
+	 * @param type
+	 * @param items
+	 * @param callback may be null
+	 * @return Future with the number of items added
+	 */
+	public <T extends ReflectTableInterface> Future<Integer> addItemsAsync(final Class<T> type, final List<? extends T> items,
+																		   DBCallback<? super Integer> callback) {
+		return submitWrite(new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				long[] ids = requireCrudHelper(type).addItems(items);
+				if (ids == null) {
+					throw new DBException("Problems adding " + type.getName());
+				}
+				int added = 0;
+				for (long id : ids) {
+					if (id != -1) {
+						added++;
+					}
+				}
+				return added;
+			}
+		}, callback);
+	}
+
+	/**
+	 * Update a single item on the write executor
+	 * @param type
+	 * @param data
+	 * @param callback may be null
+	 * @return Future
+	 */
+	public <T extends ReflectTableInterface> Future<Void> updateItemAsync(final Class<T> type, final T data, DBCallback<? super Void> callback) {
+		return submitWrite(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				requireCrudHelper(type).updateItem(data, data.getId());
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * Delete a single item on the write executor
+	 * @param type
+	 * @param id
+	 * @param callback may be null
+	 * @return Future
+	 */
+	public <T extends ReflectTableInterface> Future<Void> deleteItemAsync(final Class<T> type, final long id, DBCallback<? super Void> callback) {
+		return submitWrite(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				requireCrudHelper(type).deleteItem(id);
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * Get the CRUDHelper for the class or throw if it isn't a table
+	 * @param type
+	 * @return CRUDHelper
+	 * @throws DBException
+	 */
+	protected CRUDHelper<ReflectTableInterface> requireCrudHelper(Class<? extends ReflectTableInterface> type) throws DBException {
+		CRUDHelper<ReflectTableInterface> crudHelper = getCrudHelper(type);
+		if (crudHelper == null) {
+			throw new DBException("Type " + type.getName() + " Not found");
+		}
+		return crudHelper;
+	}
+
+	/**
+	 * Daemon threads shared by all databases for async reads
+	 * @return ExecutorService
+	 */
+	private static synchronized ExecutorService getSharedReadExecutor() {
+		if (sharedReadExecutor == null) {
+			int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+			sharedReadExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "ReflectionDBHelper-read-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return sharedReadExecutor;
+	}
 }
@@ -0,0 +1,72 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+import android.database.Cursor;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads cursor rows into objects. A binder is built once for a cursor projection and mapper and then
+ * reused for every row, so subclasses can look up column indexes up front instead of for each row.
+ * This base class just calls the mapper for each column.
+ */
+public class RowBinder<T> {
+	protected final DataMapper<T> mapper;
+	protected final String[] cursorColumns;
+	protected final Column[] columns;
+
+	public RowBinder(Cursor cursor, List<Column> columns, DataMapper<T> mapper) {
+		this.mapper = mapper;
+		this.cursorColumns = cursor.getColumnNames();
+		this.columns = columns.toArray(new Column[columns.size()]);
+		for (int i = 0; i < this.columns.length; i++) {
+			if (this.columns[i].column_position == 0) {
+				this.columns[i].column_position = i;
+			}
+		}
+	}
+
+	/**
+	 * Check if this binder can be used for the given cursor and mapper
+	 * @param cursor
+	 * @param mapper
+	 * @return true if the cursor has the same columns this binder was built for
+	 */
+	public boolean matches(Cursor cursor, DataMapper<T> mapper) {
+		return this.mapper == mapper && Arrays.equals(cursorColumns, cursor.getColumnNames());
+	}
+
+	/**
+	 * Read the current cursor row into data
+	 * @param cursor
+	 * @param data
+	 */
+	public void bind(Cursor cursor, T data) throws DBException {
+		for (Column column : columns) {
+			mapper.read(cursor, column, data);
+		}
+	}
+
+	/**
+	 * Binder for mappers written by the annotation processor. Resolves the mapper's column indexes once
+	 */
+	static class GeneratedRowBinder<T> extends RowBinder<T> {
+		private final GeneratedDataMapper<T> generatedMapper;
+		private final int[] indexes;
+
+		GeneratedRowBinder(Cursor cursor, List<Column> columns, GeneratedDataMapper<T> mapper) {
+			super(cursor, columns, mapper);
+			generatedMapper = mapper;
+			String[] columnNames = mapper.getColumnNames();
+			indexes = new int[columnNames.length];
+			for (int i = 0; i < columnNames.length; i++) {
+				indexes[i] = cursor.getColumnIndex(columnNames[i]);
+			}
+		}
+
+		@Override
+		public void bind(Cursor cursor, T data) throws DBException {
+			generatedMapper.readRow(cursor, indexes, data);
+		}
+	}
+}
@@ -0,0 +1,14 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+/**
+ * Visits rows one at a time instead of building a list. The same item instance is reused for every
+ * row, so copy any values you need to keep before returning.
+ */
+public interface RowVisitor<T> {
+	/**
+	 * Visit the current row
+	 * @param item item filled with the current row. Reused for the next row
+	 * @return true to keep going, false to stop
+	 */
+	boolean visit(T item);
+}
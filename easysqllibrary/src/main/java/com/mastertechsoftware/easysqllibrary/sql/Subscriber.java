@@ -0,0 +1,30 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+/**
+ * Receives items from a Publisher. Calls are never made concurrently. Nothing is sent until items are
+ * requested through the Subscription.
+ */
+public interface Subscriber<T> {
+	/**
+	 * Called first with the subscription used to request items or cancel
+	 * @param subscription
+	 */
+	void onSubscribe(Subscription subscription);
+
+	/**
+	 * The next item
+	 * @param item
+	 */
+	void onNext(T item);
+
+	/**
+	 * Failed. No more calls follow
+	 * @param throwable
+	 */
+	void onError(Throwable throwable);
+
+	/**
+	 * All items sent. No more calls follow
+	 */
+	void onComplete();
+}
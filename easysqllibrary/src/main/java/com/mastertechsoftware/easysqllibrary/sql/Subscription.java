@@ -0,0 +1,17 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+/**
+ * Link between a Publisher and one Subscriber
+ */
+public interface Subscription {
+	/**
+	 * Ask for up to n more items. Can be called from onNext
+	 * @param n must be positive
+	 */
+	void request(long n);
+
+	/**
+	 * Stop sending items and release resources. May still get items that were already on their way
+	 */
+	void cancel();
+}
@@ -16,6 +16,7 @@ public abstract class Table<T> {
     protected String idField = ID;
 	protected List<Column> columns = new ArrayList<Column>();
 	protected String[] projection;
+	protected String createTableString;
     protected int version = 1;
 
   /**
@@ -76,6 +77,7 @@ public abstract class Table<T> {
 	 */
 	public void setColumns(List<Column> columns) {
 		this.columns = columns;
+		columnsChanged();
 	}
 
 	/**
@@ -118,6 +120,7 @@ public abstract class Table<T> {
 	 */
 	public void setTableName(String tableName) {
 		this.tableName = tableName;
+		createTableString = null;
 	}
 
 	/**
@@ -126,6 +129,7 @@ public abstract class Table<T> {
 	 */
 	public void addColumn(Column column) {
 		columns.add(column);
+		columnsChanged();
 	}
 
 	/**
@@ -134,6 +138,7 @@ public abstract class Table<T> {
 	 */
 	public void removeColumn(Column column) {
 		columns.remove(column);
+		columnsChanged();
 	}
 
     /**
@@ -141,13 +146,33 @@ public abstract class Table<T> {
      */
 	public void removeColumns() {
 		columns.clear();
+		columnsChanged();
 	}
 
 	/**
-	 * Create a string to create a new table.
+	 * Called when the columns change. Clears anything built from the columns
+	 */
+	protected void columnsChanged() {
+		createTableString = null;
+		projection = null;
+	}
+
+	/**
+	 * Create a string to create a new table. The string is cached until the columns change.
 	 * @return sql string
 	 */
 	public String getCreateTableString() {
+		if (createTableString == null) {
+			createTableString = buildCreateTableString();
+		}
+		return createTableString;
+	}
+
+	/**
+	 * Build the create table string from the columns
+	 * @return sql string
+	 */
+	protected String buildCreateTableString() {
 		StringBuilder builder = new StringBuilder();
 		builder.append("CREATE TABLE IF NOT EXISTS ").append(tableName).append(" (");
 		boolean firstColumn = true;
@@ -0,0 +1,362 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+import android.content.ContentValues;
+
+import com.mastertechsoftware.logging.Logger;
+
+import java.util.List;
+
+/**
+ * Typed handle for a single table. Get one from DatabaseManager.table() or ReflectionDBHelper.table()
+ * and keep it. Calls go straight to the table's CRUDHelper without any database or class lookups.
+ * Writes go through the helper's write behind queue when it has one, so they stay in order with its writes.
+ */
+public class TableHandle<T extends ReflectTableInterface> {
+	protected final Class<T> type;
+	protected final CRUDHelper<ReflectTableInterface> crudHelper;
+	// Owner of the write behind queue. Null writes directly
+	protected final ReflectionDBHelper dbHelper;
+
+	public TableHandle(Class<T> type, CRUDHelper<ReflectTableInterface> crudHelper) {
+		this(type, crudHelper, null);
+	}
+
+	public TableHandle(Class<T> type, CRUDHelper<ReflectTableInterface> crudHelper, ReflectionDBHelper dbHelper) {
+		this.type = type;
+		this.crudHelper = crudHelper;
+		this.dbHelper = dbHelper;
+	}
+
+	/**
+	 * Return the model class
+	 * @return Class
+	 */
+	public Class<T> getType() {
+		return type;
+	}
+
+	/**
+	 * Return the CRUDHelper
+	 * @return CRUDHelper
+	 */
+	public CRUDHelper<ReflectTableInterface> getCrudHelper() {
+		return crudHelper;
+	}
+
+	/**
+	 * Return the table
+	 * @return Table
+	 */
+	public Table getTable() {
+		return crudHelper.getTable();
+	}
+
+	/**
+	 * Add a single item
+	 * @param data
+	 * @return id of the new item. -1 if there was an error
+	 */
+	public long addItem(T data) {
+		if (dbHelper != null) {
+			return dbHelper.addItem(crudHelper, data);
+		}
+		return crudHelper.addItem(data);
+	}
+
+	/**
+	 * Add a list of items in one transaction. The new ids are set on the items
+	 * @param items
+	 * @return new ids in list order (-1 for items that failed) or null on error
+	 */
+	public long[] addItems(List<? extends T> items) {
+		if (dbHelper != null) {
+			return dbHelper.addItems(crudHelper, items);
+		}
+		return crudHelper.addItems(items);
+	}
+
+	/**
+	 * Update a list of items by id in one transaction
+	 * @param items
+	 * @param columns columns to write. None writes every column
+	 * @return number of rows updated or -1 on error
+	 */
+	public int updateAll(List<? extends T> items, String... columns) {
+		if (dbHelper != null) {
+			return dbHelper.updateAll(crudHelper, items, columns);
+		}
+		return crudHelper.updateAll(items, columns);
+	}
+
+	/**
+	 * Insert the item, or update the row with the same values in the conflict columns
+	 * @param data
+	 * @param conflictColumns none uses the unique columns, or the id if there are none
+	 * @return id of the inserted or updated row. -1 on error
+	 */
+	public long upsert(T data, String... conflictColumns) {
+		if (dbHelper != null) {
+			return dbHelper.upsert(crudHelper, data, conflictColumns);
+		}
+		return crudHelper.upsert(data, conflictColumns);
+	}
+
+	/**
+	 * Upsert a list of items in one transaction
+	 * @param items
+	 * @param conflictColumns none uses the unique columns, or the id if there are none
+	 * @return ids in list order (-1 for items that failed) or null on error
+	 */
+	public long[] upsertAll(List<? extends T> items, String... conflictColumns) {
+		if (dbHelper != null) {
+			return dbHelper.upsertAll(crudHelper, items, conflictColumns);
+		}
+		return crudHelper.upsertAll(items, conflictColumns);
+	}
+
+	/**
+	 * Update a single item
+	 * @param data
+	 */
+	public void updateItem(T data) {
+		if (dbHelper != null) {
+			dbHelper.updateItem(crudHelper, data);
+			return;
+		}
+		crudHelper.updateItem(data, data.getId());
+	}
+
+	/**
+	 * Update the table with the given where clause
+	 * @param cv
+	 * @param whereClause
+	 * @param whereArgs
+	 * @return result
+	 */
+	public long updateEntryWhere(ContentValues cv, String whereClause, String[] whereArgs) {
+		if (dbHelper != null) {
+			return dbHelper.updateEntryWhere(crudHelper, cv, whereClause, whereArgs);
+		}
+		return crudHelper.updateEntryWhere(cv, whereClause, whereArgs);
+	}
+
+	/**
+	 * Get a single item with the given id
+	 * @param id
+	 * @return item or null if not found
+	 */
+	public T getItem(long id) {
+		T item = newItem();
+		if (item == null) {
+			return null;
+		}
+		return getItem(id, item);
+	}
+
+	/**
+	 * Get a single item with the given id, filling in the given item
+	 * @param id
+	 * @param item
+	 * @return item or null if not found
+	 */
+	public T getItem(long id, T item) {
+		return getItem(id, item, null);
+	}
+
+	/**
+	 * Get a single item with the given id, filling in the given item
+	 * @param id
+	 * @param item
+	 * @param control may be null
+	 * @return item or null if not found
+	 */
+	@SuppressWarnings("unchecked")
+	public T getItem(long id, T item, QueryControl control) {
+		return (T) crudHelper.getItem(id, item, control);
+	}
+
+	/**
+	 * Get a single item with the given value
+	 * @param columnName
+	 * @param columnValue
+	 * @return item or null if not found
+	 */
+	@SuppressWarnings("unchecked")
+	public T getItemWhere(String columnName, String columnValue) {
+		T item = newItem();
+		if (item == null) {
+			return null;
+		}
+		return (T) crudHelper.getItemWhere(item, columnName, columnValue);
+	}
+
+	/**
+	 * Get all items
+	 * @return List
+	 */
+	public List<T> getAllItems() {
+		return getAllItems(null);
+	}
+
+	/**
+	 * Get all items
+	 * @param control may be null
+	 * @return List
+	 */
+	@SuppressWarnings("unchecked")
+	public List<T> getAllItems(QueryControl control) {
+		return (List<T>) crudHelper.getItems(type, control);
+	}
+
+	/**
+	 * Get all items with the given value
+	 * @param columnName
+	 * @param columnValue
+	 * @return List
+	 */
+	public List<T> getItemsWhere(String columnName, String columnValue) {
+		return getItemsWhere(columnName, columnValue, null);
+	}
+
+	/**
+	 * Get all items with the given value
+	 * @param columnName
+	 * @param columnValue
+	 * @param control may be null
+	 * @return List
+	 */
+	@SuppressWarnings("unchecked")
+	public List<T> getItemsWhere(String columnName, String columnValue, QueryControl control) {
+		return (List<T>) crudHelper.getItemsWhere(type, columnName, columnValue, control);
+	}
+
+	/**
+	 * Get all items matching all of the given values
+	 * @param fields
+	 * @return List
+	 */
+	public List<T> getItemsWhere(List<ColumnValue> fields) {
+		return getItemsWhere(fields, null);
+	}
+
+	/**
+	 * Get all items matching all of the given values
+	 * @param fields
+	 * @param control may be null
+	 * @return List
+	 */
+	@SuppressWarnings("unchecked")
+	public List<T> getItemsWhere(List<ColumnValue> fields, QueryControl control) {
+		return (List<T>) crudHelper.getItemsWhere(type, fields, control);
+	}
+
+	/**
+	 * Visit all items that match the where clause, reusing one item for every row
+	 * @param whereClause null for all items
+	 * @param whereArgs
+	 * @param visitor
+	 * @return number of items visited or -1 on error
+	 */
+	public int forEach(String whereClause, String[] whereArgs, RowVisitor<? super T> visitor) {
+		return forEach(whereClause, whereArgs, visitor, null);
+	}
+
+	/**
+	 * Visit all items that match the where clause, reusing one item for every row
+	 * @param whereClause null for all items
+	 * @param whereArgs
+	 * @param visitor
+	 * @param control may be null
+	 * @return number of items visited or -1 on error
+	 */
+	@SuppressWarnings("unchecked")
+	public int forEach(String whereClause, String[] whereArgs, RowVisitor<? super T> visitor, QueryControl control) {
+		return crudHelper.forEach(type, whereClause, whereArgs, (RowVisitor<ReflectTableInterface>) visitor, control);
+	}
+
+	/**
+	 * Stream the items that match the where clause as the subscriber requests them
+	 * @param whereClause null for all items
+	 * @param whereArgs
+	 * @return Publisher
+	 */
+	public Publisher<T> publish(String whereClause, String[] whereArgs) {
+		return new QueryPublisher<T>(crudHelper, type, whereClause, whereArgs, null);
+	}
+
+	/**
+	 * Delete a single item
+	 * @param id
+	 */
+	public void deleteItem(long id) {
+		if (dbHelper != null) {
+			dbHelper.deleteItem(crudHelper, id);
+			return;
+		}
+		crudHelper.deleteItem(id);
+	}
+
+	/**
+	 * Delete the items with the given ids without loading them
+	 * @param ids
+	 * @return number of items deleted or -1 on error
+	 */
+	public long deleteByIds(long[] ids) {
+		if (dbHelper != null) {
+			return dbHelper.deleteByIds(crudHelper, ids);
+		}
+		return crudHelper.deleteByIds(ids);
+	}
+
+	/**
+	 * Delete the items that match the where clause without loading them
+	 * @param whereClause needs to use "?" formats
+	 * @param whereArgs
+	 * @return number of items deleted or -1 on error
+	 */
+	public long deleteWhere(String whereClause, String[] whereArgs) {
+		if (dbHelper != null) {
+			return dbHelper.deleteWhere(crudHelper, whereClause, whereArgs);
+		}
+		return crudHelper.deleteWhere(whereClause, whereArgs);
+	}
+
+	/**
+	 * Delete items with the given column value
+	 * @param columnName
+	 * @param columnValue
+	 */
+	public void deleteItemWhere(String columnName, String columnValue) {
+		if (dbHelper != null) {
+			dbHelper.deleteItemWhere(crudHelper, columnName, columnValue);
+			return;
+		}
+		crudHelper.deleteItemWhere(columnName, columnValue);
+	}
+
+	/**
+	 * Remove all items
+	 */
+	public void deleteAllItems() {
+		if (dbHelper != null) {
+			dbHelper.deleteAllItems(crudHelper);
+			return;
+		}
+		crudHelper.deleteAllItems();
+	}
+
+	/**
+	 * Create an empty item
+	 * @return item or null if the class could not be created
+	 */
+	protected T newItem() {
+		try {
+			return type.newInstance();
+		} catch (InstantiationException e) {
+			Logger.error("Problems Creating object of type " + type.getName(), e);
+		} catch (IllegalAccessException e) {
+			Logger.error("Problems Creating object of type " + type.getName(), e);
+		}
+		return null;
+	}
+}
@@ -0,0 +1,58 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+
+import com.mastertechsoftware.logging.Logger;
+
+/**
+ * A compiled statement that is reused for every row written to a table. The statement belongs to the
+ * SQLiteDatabase it was compiled on, so it is compiled again when the database is reopened.
+ * SQLiteStatement is not thread safe: synchronize on this object while binding and executing.
+ */
+public class TableStatement {
+	private final String sql;
+	private SQLiteDatabase database;
+	private SQLiteStatement statement;
+
+	public TableStatement(String sql) {
+		this.sql = sql;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * Get the compiled statement for the given database. Bindings are cleared
+	 * @param sqLiteDatabase
+	 * @return SQLiteStatement
+	 */
+	public SQLiteStatement get(SQLiteDatabase sqLiteDatabase) throws SQLiteException {
+		if (statement == null || database != sqLiteDatabase) {
+			close();
+			statement = sqLiteDatabase.compileStatement(sql);
+			database = sqLiteDatabase;
+		} else {
+			statement.clearBindings();
+		}
+		return statement;
+	}
+
+	/**
+	 * Release the compiled statement
+	 */
+	public void close() {
+		if (statement != null) {
+			try {
+				statement.close();
+			} catch (Exception e) {
+				// The database may already be closed
+				Logger.debug("TableStatement.close: " + e.getMessage());
+			}
+			statement = null;
+			database = null;
+		}
+	}
+}
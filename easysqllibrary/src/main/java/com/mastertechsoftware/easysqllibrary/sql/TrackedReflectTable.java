@@ -0,0 +1,20 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+/**
+ * DefaultReflectTable with change tracking. Updates only write the fields that changed since the item
+ * was read or last written
+ */
+public class TrackedReflectTable extends DefaultReflectTable implements ChangeTracked {
+    // Transient so it is not a column
+    protected transient Object[] snapshot;
+
+    @Override
+    public Object[] getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public void setSnapshot(Object[] snapshot) {
+        this.snapshot = snapshot;
+    }
+}
@@ -0,0 +1,15 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+/**
+ * Work run inside one transaction by ReflectionDBHelper.inTransaction. Every add, update and delete
+ * made through the helper joins the transaction. Throw to roll all of it back. A write that fails rolls
+ * it back too.
+ */
+public interface UnitOfWork {
+	/**
+	 * Do the work
+	 * @param helper helper for the database the transaction is on
+	 * @throws Exception to roll back
+	 */
+	void run(ReflectionDBHelper helper) throws Exception;
+}
@@ -0,0 +1,290 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+import com.mastertechsoftware.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queues writes for one database and runs them in batches, one transaction per batch. A batch is
+ * written when it reaches the maximum size or when the oldest write has waited the maximum delay.
+ * Thousands of small writes then share a handful of commits. Futures complete after their batch commits.
+ * A write that fails is rolled back on its own. If the batch is rolled back, every write in it fails.
+ */
+public class WriteBehindQueue {
+
+	/**
+	 * When a blocking write returns to the caller
+	 */
+	public enum Durability {
+		/** Wait until the batch holding the write has committed */
+		COMMIT,
+		/** Return once the write is queued. Queued writes are lost if the process dies before the commit */
+		ENQUEUE
+	}
+
+	protected final BaseDatabaseHelper databaseHelper;
+	protected final int maxBatchSize;
+	protected final long maxDelayNanos;
+	protected final Durability durability;
+	private final LinkedBlockingQueue<PendingWrite<?>> queue = new LinkedBlockingQueue<PendingWrite<?>>();
+	private final Thread writer;
+	private volatile boolean running = true;
+	private final AtomicLong batchCount = new AtomicLong();
+	private final AtomicLong writeCount = new AtomicLong();
+	// Writes queued but not yet completed
+	private final AtomicInteger pendingCount = new AtomicInteger();
+
+	/**
+	 * Create the queue and start its writer thread
+	 * @param databaseHelper
+	 * @param maxBatchSize most writes in one transaction
+	 * @param maxDelay longest a write waits for others to join its batch
+	 * @param unit
+	 * @param durability
+	 */
+	public WriteBehindQueue(BaseDatabaseHelper databaseHelper, int maxBatchSize, long maxDelay, TimeUnit unit, Durability durability) {
+		this.databaseHelper = databaseHelper;
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+		this.maxDelayNanos = unit.toNanos(Math.max(0, maxDelay));
+		this.durability = durability;
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeLoop();
+			}
+		}, "WriteBehindQueue-" + databaseHelper.getDatabaseName());
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	public Durability getDurability() {
+		return durability;
+	}
+
+	/**
+	 * Return true if called from the writer thread. Writes from inside a batch must run directly
+	 * @return true on the writer thread
+	 */
+	public boolean isWriterThread() {
+		return Thread.currentThread() == writer;
+	}
+
+	/**
+	 * Number of transactions committed
+	 * @return batch count
+	 */
+	public long getBatchCount() {
+		return batchCount.get();
+	}
+
+	/**
+	 * Number of writes run
+	 * @return write count
+	 */
+	public long getWriteCount() {
+		return writeCount.get();
+	}
+
+	/**
+	 * Queue a write. It runs inside the batch transaction on the writer thread
+	 * @param write
+	 * @param callback may be null. Called after the batch commits
+	 * @return Future completed after the batch commits
+	 */
+	public <R> DBFuture<R> submit(Callable<R> write, DBCallback<? super R> callback) {
+		if (!running) {
+			return DBFuture.failed(new DBException("Write behind queue is shut down"), callback);
+		}
+		PendingWrite<R> pending = new PendingWrite<R>(write, callback);
+		pendingCount.incrementAndGet();
+		queue.add(pending);
+		if (!running && queue.remove(pending)) {
+			// Shut down while adding. The writer may already have drained the queue
+			pending.setError(new DBException("Write behind queue is shut down"));
+			finish(pending);
+		}
+		return pending.future;
+	}
+
+	/**
+	 * Return true if no writes are waiting to be written
+	 * @return true if idle
+	 */
+	public boolean isIdle() {
+		return pendingCount.get() == 0;
+	}
+
+	/**
+	 * Wait until every write queued before this call has committed
+	 * @throws InterruptedException
+	 */
+	public void flush() throws InterruptedException {
+		if (!running || isIdle()) {
+			return;
+		}
+		PendingWrite<Void> barrier = new PendingWrite<Void>(null, null);
+		queue.add(barrier);
+		barrier.flushed.await();
+	}
+
+	/**
+	 * Commit everything queued and stop the writer thread. Later writes fail
+	 */
+	public void shutdown() {
+		try {
+			flush();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		running = false;
+		writer.interrupt();
+	}
+
+	private void writeLoop() {
+		List<PendingWrite<?>> batch = new ArrayList<PendingWrite<?>>();
+		while (running) {
+			try {
+				batch.add(queue.take());
+				long deadline = System.nanoTime() + maxDelayNanos;
+				while (batch.size() < maxBatchSize && !batch.get(batch.size() - 1).isBarrier()) {
+					long remaining = deadline - System.nanoTime();
+					PendingWrite<?> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+			} catch (InterruptedException e) {
+				if (batch.isEmpty()) {
+					continue;
+				}
+			}
+			writeBatch(batch);
+			batch.clear();
+		}
+		// Anything left after shutdown fails
+		PendingWrite<?> pending;
+		while ((pending = queue.poll()) != null) {
+			pending.setError(new DBException("Write behind queue is shut down"));
+			finish(pending);
+		}
+	}
+
+	/**
+	 * Run the batch in one transaction, then complete the futures. Each write runs in its own savepoint,
+	 * so a write that fails is rolled back and fails alone. If the transaction didn't commit, every write
+	 * in the batch fails
+	 * @param batch
+	 */
+	protected void writeBatch(List<PendingWrite<?>> batch) {
+		try {
+			databaseHelper.startTransaction();
+		} catch (DBException e) {
+			Logger.error(this, "writeBatch: problems starting transaction", e);
+			completeBatch(batch, e);
+			return;
+		}
+		boolean successful = false;
+		boolean committed = false;
+		try {
+			for (PendingWrite<?> pending : batch) {
+				if (!pending.isBarrier()) {
+					String savepoint = databaseHelper.startSavepoint();
+					pending.write();
+					if (!databaseHelper.endSavepoint(savepoint, pending.error == null)) {
+						pending.setError(new DBException("Write failed and was rolled back"));
+					}
+					writeCount.incrementAndGet();
+				}
+			}
+			successful = true;
+		} catch (DBException e) {
+			Logger.error(this, "writeBatch: problems with savepoint", e);
+		} finally {
+			committed = databaseHelper.endTransaction(successful);
+		}
+		if (committed) {
+			batchCount.incrementAndGet();
+			completeBatch(batch, null);
+		} else {
+			Logger.error(this, "writeBatch: batch of " + batch.size() + " writes was rolled back");
+			completeBatch(batch, new DBException("Write rolled back with its batch"));
+		}
+	}
+
+	/**
+	 * Complete the futures of a batch
+	 * @param batch
+	 * @param error set on every write if not null
+	 */
+	private void completeBatch(List<PendingWrite<?>> batch, Exception error) {
+		for (PendingWrite<?> pending : batch) {
+			if (error != null) {
+				pending.setError(error);
+			}
+			finish(pending);
+		}
+	}
+
+	private void finish(PendingWrite<?> pending) {
+		if (!pending.isBarrier()) {
+			pendingCount.decrementAndGet();
+		}
+		pending.complete();
+	}
+
+	/**
+	 * A queued write, or a flush barrier when there is no callable
+	 */
+	static class PendingWrite<R> {
+		final Callable<R> write;
+		final DBFuture<R> future;
+		final CountDownLatch flushed = new CountDownLatch(1);
+		R result;
+		Exception error;
+
+		PendingWrite(Callable<R> write, DBCallback<? super R> callback) {
+			this.write = write;
+			future = new DBFuture<R>(new Callable<R>() {
+				@Override
+				public R call() throws Exception {
+					if (error != null) {
+						throw error;
+					}
+					return result;
+				}
+			}, callback);
+		}
+
+		boolean isBarrier() {
+			return write == null;
+		}
+
+		void write() {
+			try {
+				result = write.call();
+			} catch (Exception e) {
+				Logger.error("WriteBehindQueue: write failed", e);
+				error = e;
+			}
+		}
+
+		void setError(Exception e) {
+			if (error == null) {
+				error = e;
+			}
+		}
+
+		void complete() {
+			future.run();
+			flushed.countDown();
+		}
+	}
+}
@@ -1,18 +1,627 @@
 package com.mastertechsoftware.EasySQLLibrary;
 
 import com.google.auto.service.AutoService;
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.WildcardTypeName;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
 import java.util.Set;
 
 import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.Processor;
 import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
 
+/**
+ * Generates a table schema and a DataMapper for every class that implements ReflectTableInterface.
+ * The schema holds the columns, nested tables and create string so ReflectTable does not need to discover them.
+ * The generated mapper reads and writes the model fields directly so ReflectTable does not need reflection.
+ * Models with fields the generated class cannot reach (private or protected in another package) only get
+ * a schema and keep using the reflection mapper.
+ */
 @AutoService(Processor.class)
 public class EasySQLLibraryProcessor extends AbstractProcessor {
+	static final String SQL_PACKAGE = "com.mastertechsoftware.easysqllibrary.sql";
+	static final String REFLECT_TABLE_INTERFACE = SQL_PACKAGE + ".ReflectTableInterface";
+	static final String MAPPER_SUFFIX = "_DataMapper";
+	static final String SCHEMA_SUFFIX = "_TableSchema";
+	static final String ID = "_id";
+
+	// Column.COLUMN_TYPE names
+	static final String INTEGER = "INTEGER";
+	static final String LONG = "LONG";
+	static final String DOUBLE = "DOUBLE";
+	static final String TEXT = "TEXT";
+	static final String FLOAT = "FLOAT";
+	static final String BOOLEAN = "BOOLEAN";
+	static final String TIMESTAMP = "TIMESTAMP";
+
+	static final ClassName GENERATED_DATA_MAPPER = ClassName.get(SQL_PACKAGE, "GeneratedDataMapper");
+	static final ClassName GENERATED_TABLE_SCHEMA = ClassName.get(SQL_PACKAGE, "GeneratedTableSchema");
+	static final ClassName COLUMN = ClassName.get(SQL_PACKAGE, "Column");
+	static final ClassName COLUMN_TYPE = ClassName.get(SQL_PACKAGE, "Column", "COLUMN_TYPE");
+	static final ClassName DB_EXCEPTION = ClassName.get(SQL_PACKAGE, "DBException");
+	static final ClassName CONTENT_VALUES = ClassName.get("android.content", "ContentValues");
+	static final ClassName CURSOR = ClassName.get("android.database", "Cursor");
+	static final ClassName SQLITE_STATEMENT = ClassName.get("android.database.sqlite", "SQLiteStatement");
+	static final ClassName LIST = ClassName.get(List.class);
+	static final ClassName ARRAY_LIST = ClassName.get(ArrayList.class);
+	static final ClassName CLASS = ClassName.get(Class.class);
+	static final TypeName CLASS_ARRAY = ArrayTypeName.of(ParameterizedTypeName.get(CLASS, WildcardTypeName.subtypeOf(Object.class)));
+
+	protected Elements elements;
+	protected Types types;
+	protected TypeMirror reflectTableInterface;
+
+	@Override
+	public synchronized void init(ProcessingEnvironment processingEnv) {
+		super.init(processingEnv);
+		elements = processingEnv.getElementUtils();
+		types = processingEnv.getTypeUtils();
+	}
+
+	@Override
+	public Set<String> getSupportedAnnotationTypes() {
+		// Models are found by interface, not annotation
+		return Collections.singleton("*");
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
 	@Override
 	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		TypeElement interfaceElement = elements.getTypeElement(REFLECT_TABLE_INTERFACE);
+		if (interfaceElement == null) {
+			return false;
+		}
+		reflectTableInterface = types.erasure(interfaceElement.asType());
+		List<TypeElement> models = new ArrayList<TypeElement>();
+		for (Element element : roundEnv.getRootElements()) {
+			addModels(element, models);
+		}
+		for (TypeElement model : models) {
+			ModelInfo modelInfo = readModel(model);
+			if (modelInfo == null) {
+				continue;
+			}
+			writeSchema(modelInfo);
+			writeMapper(modelInfo);
+		}
 		return false;
 	}
+
+	/**
+	 * Add the element and any nested classes that are table models
+	 * @param element
+	 * @param models
+	 */
+	private void addModels(Element element, List<TypeElement> models) {
+		if (element.getKind() != ElementKind.CLASS) {
+			return;
+		}
+		TypeElement typeElement = (TypeElement) element;
+		if (isModel(typeElement)) {
+			models.add(typeElement);
+		}
+		for (Element enclosed : typeElement.getEnclosedElements()) {
+			if (enclosed.getModifiers().contains(Modifier.STATIC)) {
+				addModels(enclosed, models);
+			}
+		}
+	}
+
+	/**
+	 * A model is a concrete, non private class that implements ReflectTableInterface and has a no-arg constructor
+	 */
+	private boolean isModel(TypeElement typeElement) {
+		Set<Modifier> modifiers = typeElement.getModifiers();
+		if (modifiers.contains(Modifier.ABSTRACT) || modifiers.contains(Modifier.PRIVATE)) {
+			return false;
+		}
+		if (!implementsTableInterface(typeElement.asType())) {
+			return false;
+		}
+		for (Element enclosed : typeElement.getEnclosedElements()) {
+			if (enclosed.getKind() == ElementKind.CONSTRUCTOR && ((ExecutableElement) enclosed).getParameters().isEmpty()
+					&& !enclosed.getModifiers().contains(Modifier.PRIVATE)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean implementsTableInterface(TypeMirror typeMirror) {
+		return typeMirror.getKind() == TypeKind.DECLARED && types.isAssignable(types.erasure(typeMirror), reflectTableInterface);
+	}
+
+	/**
+	 * Read the fields the same way ReflectTable does: declared fields of the class then each superclass,
+	 * skipping transient fields.
+	 * @param model
+	 * @return ModelInfo or null if the model can't be described at compile time
+	 */
+	protected ModelInfo readModel(TypeElement model) {
+		ModelInfo modelInfo = new ModelInfo(model, elements.getPackageOf(model).getQualifiedName().toString());
+		TypeElement current = model;
+		while (current != null) {
+			for (Element enclosed : current.getEnclosedElements()) {
+				if (enclosed.getKind() != ElementKind.FIELD) {
+					continue;
+				}
+				VariableElement field = (VariableElement) enclosed;
+				if (field.getModifiers().contains(Modifier.TRANSIENT)) {
+					continue;
+				}
+				if (types.erasure(field.asType()).toString().equals(Object.class.getName())) {
+					// ReflectTable throws for Object fields. Leave it to do so at runtime
+					return null;
+				}
+				FieldInfo fieldInfo = readField(field);
+				if (fieldInfo == null) {
+					continue;
+				}
+				if (fieldInfo.isReflect() && !isAccessible(fieldInfo.typeElement, modelInfo.packageName)) {
+					processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+							"Table " + fieldInfo.typeElement.getSimpleName() + " is not accessible. " + model.getSimpleName() + " will use reflection", model);
+					return null;
+				}
+				if (fieldInfo.isMapped() && !ID.equalsIgnoreCase(fieldInfo.name) && !isAccessible(field, current, modelInfo.packageName)) {
+					processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+							"Field " + fieldInfo.name + " is not accessible. " + model.getSimpleName() + " will use the reflection mapper", model);
+					modelInfo.mapperAccessible = false;
+				}
+				if (ID.equalsIgnoreCase(fieldInfo.name)) {
+					modelInfo.idFound = true;
+				}
+				modelInfo.fields.add(fieldInfo);
+			}
+			TypeMirror superclass = current.getSuperclass();
+			if (superclass.getKind() != TypeKind.DECLARED) {
+				break;
+			}
+			current = (TypeElement) ((DeclaredType) superclass).asElement();
+		}
+		if (!modelInfo.idFound) {
+			// ReflectTable throws when there is no id field. Leave it to do so at runtime
+			return null;
+		}
+		return modelInfo;
+	}
+
+	/**
+	 * Generated code lives in the model's package so it can reach public fields and
+	 * package/protected fields declared in that same package.
+	 */
+	private boolean isAccessible(VariableElement field, TypeElement declaringClass, String packageName) {
+		Set<Modifier> modifiers = field.getModifiers();
+		if (modifiers.contains(Modifier.PRIVATE)) {
+			return false;
+		}
+		if (modifiers.contains(Modifier.PUBLIC)) {
+			return true;
+		}
+		PackageElement declaringPackage = elements.getPackageOf(declaringClass);
+		return declaringPackage.getQualifiedName().contentEquals(packageName);
+	}
+
+	/**
+	 * Check that a class can be referenced from the given package
+	 */
+	private boolean isAccessible(TypeElement typeElement, String packageName) {
+		Set<Modifier> modifiers = typeElement.getModifiers();
+		if (modifiers.contains(Modifier.PRIVATE)) {
+			return false;
+		}
+		if (modifiers.contains(Modifier.PUBLIC)) {
+			return true;
+		}
+		return elements.getPackageOf(typeElement).getQualifiedName().contentEquals(packageName);
+	}
+
+	/**
+	 * Map a field to its column type. Mirrors ReflectTable.readProperties
+	 * @param field
+	 * @return FieldInfo or null if the field is not a column
+	 */
+	protected FieldInfo readField(VariableElement field) {
+		String name = field.getSimpleName().toString();
+		TypeMirror typeMirror = field.asType();
+		TypeKind kind = typeMirror.getKind();
+		boolean isFinal = field.getModifiers().contains(Modifier.FINAL);
+		TypeName typeName = TypeName.get(types.erasure(typeMirror));
+		if (kind == TypeKind.INT) {
+			return new FieldInfo(name, INTEGER, FieldInfo.INTEGER, typeName, isFinal);
+		} else if (kind == TypeKind.FLOAT) {
+			return new FieldInfo(name, FLOAT, FieldInfo.FLOAT, typeName, isFinal);
+		} else if (kind == TypeKind.BOOLEAN) {
+			return new FieldInfo(name, BOOLEAN, FieldInfo.BOOLEAN, typeName, isFinal);
+		} else if (kind == TypeKind.LONG) {
+			return new FieldInfo(name, LONG, FieldInfo.LONG, typeName, isFinal);
+		} else if (kind == TypeKind.DOUBLE) {
+			return new FieldInfo(name, DOUBLE, FieldInfo.DOUBLE, typeName, isFinal);
+		} else if (kind != TypeKind.DECLARED) {
+			return null;
+		}
+		String className = types.erasure(typeMirror).toString();
+		if (Integer.class.getName().equals(className)) {
+			return new FieldInfo(name, INTEGER, FieldInfo.INTEGER, typeName, isFinal);
+		} else if (Short.class.getName().equals(className)) {
+			return new FieldInfo(name, INTEGER, FieldInfo.SHORT, typeName, isFinal);
+		} else if (Float.class.getName().equals(className)) {
+			return new FieldInfo(name, FLOAT, FieldInfo.FLOAT, typeName, isFinal);
+		} else if (Boolean.class.getName().equals(className)) {
+			return new FieldInfo(name, BOOLEAN, FieldInfo.BOOLEAN, typeName, isFinal);
+		} else if (Long.class.getName().equals(className)) {
+			return new FieldInfo(name, LONG, FieldInfo.LONG, typeName, isFinal);
+		} else if (Double.class.getName().equals(className)) {
+			return new FieldInfo(name, DOUBLE, FieldInfo.DOUBLE, typeName, isFinal);
+		} else if (String.class.getName().equals(className)) {
+			return new FieldInfo(name, TEXT, FieldInfo.TEXT, typeName, isFinal);
+		} else if (Number.class.getName().equals(className)) {
+			// Column exists but ReflectTable.Mapper does not map it
+			return new FieldInfo(name, INTEGER, null, typeName, isFinal);
+		} else if (Character.class.getName().equals(className)) {
+			return new FieldInfo(name, TEXT, null, typeName, isFinal);
+		} else if (Date.class.getName().equals(className)) {
+			return new FieldInfo(name, TIMESTAMP, null, typeName, isFinal);
+		} else if (implementsTableInterface(typeMirror)) {
+			FieldInfo fieldInfo = new FieldInfo(name + ID, INTEGER, FieldInfo.REFLECT, typeName, isFinal);
+			fieldInfo.fieldName = name;
+			fieldInfo.typeElement = (TypeElement) types.asElement(typeMirror);
+			return fieldInfo;
+		}
+		return null;
+	}
+
+	/**
+	 * Write the DataMapper class for this model
+	 * @param modelInfo
+	 */
+	protected void writeMapper(ModelInfo modelInfo) {
+		if (!modelInfo.mapperAccessible) {
+			return;
+		}
+		ClassName modelClass = ClassName.get(modelInfo.model);
+		MethodSpec.Builder write = MethodSpec.methodBuilder("write")
+				.addAnnotation(Override.class)
+				.addModifiers(Modifier.PUBLIC)
+				.addParameter(CONTENT_VALUES, "cv")
+				.addParameter(COLUMN, "column")
+				.addParameter(modelClass, "data")
+				.beginControlFlow("switch (column.getName())");
+		MethodSpec.Builder read = MethodSpec.methodBuilder("read")
+				.addAnnotation(Override.class)
+				.addModifiers(Modifier.PUBLIC)
+				.addParameter(CURSOR, "cursor")
+				.addParameter(COLUMN, "column")
+				.addParameter(modelClass, "data")
+				.addException(DB_EXCEPTION)
+				.addStatement("int index = getColumnIndex(cursor, column.getName())")
+				.beginControlFlow("if (index == -1)")
+				.addStatement("return")
+				.endControlFlow()
+				.beginControlFlow("switch (column.getName())");
+		// readRow gets the cursor index of each entry in COLUMN_NAMES, resolved once per query
+		MethodSpec.Builder readRow = MethodSpec.methodBuilder("readRow")
+				.addAnnotation(Override.class)
+				.addModifiers(Modifier.PUBLIC)
+				.addParameter(CURSOR, "cursor")
+				.addParameter(int[].class, "indexes")
+				.addParameter(modelClass, "data")
+				.addException(DB_EXCEPTION)
+				.addStatement("int index");
+		// bindRow gets the statement bind position of each entry in COLUMN_NAMES, 0 if it is not bound
+		MethodSpec.Builder bindRow = MethodSpec.methodBuilder("bindRow")
+				.addAnnotation(Override.class)
+				.addModifiers(Modifier.PUBLIC)
+				.addParameter(SQLITE_STATEMENT, "statement")
+				.addParameter(int[].class, "positions")
+				.addParameter(modelClass, "data")
+				.addStatement("int position");
+		List<String> columnNames = new ArrayList<String>();
+		for (FieldInfo field : modelInfo.fields) {
+			if (!field.isMapped()) {
+				continue;
+			}
+			int columnIndex = columnNames.size();
+			columnNames.add(field.name);
+			if (ID.equalsIgnoreCase(field.name)) {
+				// The id is never written and is read through the interface so it works from any package
+				read.addCode("case $S:\n", field.name)
+						.addStatement("$>data.setId(cursor.getInt(index))")
+						.addStatement("break$<");
+				addRowRead(readRow, columnIndex, "data.setId(cursor.getInt(index))");
+				continue;
+			}
+			if (field.isReflect()) {
+				if (field.isFinal) {
+					continue;
+				}
+				// ReflectTable.insertEntry writes the nested id itself
+				read.addCode("case $S:\n", field.name)
+						.addStatement("$>data.$N = readReflectEntry(cursor, index, $T.class)", field.fieldName, field.typeName)
+						.addStatement("break$<");
+				addRowRead(readRow, columnIndex,
+						"data.$N = readReflectEntry(cursor, index, $T.class)", field.fieldName, field.typeName);
+				continue;
+			}
+			write.addCode("case $S:\n", field.name)
+					.addStatement("$>cv.put($S, data.$N)", field.name, field.fieldName)
+					.addStatement("break$<");
+			bindRow.addStatement("position = positions[$L]", columnIndex)
+					.beginControlFlow("if (position != 0)")
+					.addStatement(field.getStatementBind(), field.fieldName)
+					.endControlFlow();
+			if (field.isFinal) {
+				continue;
+			}
+			read.addCode("case $S:\n", field.name)
+					.addStatement("$>data.$N = " + field.getCursorRead(), field.fieldName)
+					.addStatement("break$<");
+			addRowRead(readRow, columnIndex, "data.$N = " + field.getCursorRead(), field.fieldName);
+		}
+		write.endControlFlow();
+		read.endControlFlow();
+
+		CodeBlock.Builder columnNamesInit = CodeBlock.builder().add("{");
+		for (int i = 0; i < columnNames.size(); i++) {
+			columnNamesInit.add(i == 0 ? "$S" : ", $S", columnNames.get(i));
+		}
+		columnNamesInit.add("}");
+
+		TypeSpec mapper = TypeSpec.classBuilder(modelInfo.getGeneratedName(MAPPER_SUFFIX))
+				.addJavadoc("Generated DataMapper for {@link $T}. Do not edit.\n", modelClass)
+				.addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+				.superclass(ParameterizedTypeName.get(GENERATED_DATA_MAPPER, modelClass))
+				.addOriginatingElement(modelInfo.model)
+				.addField(FieldSpec.builder(String[].class, "COLUMN_NAMES", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+						.initializer(columnNamesInit.build())
+						.build())
+				.addMethod(write.build())
+				.addMethod(read.build())
+				.addMethod(MethodSpec.methodBuilder("getColumnNames")
+						.addAnnotation(Override.class)
+						.addModifiers(Modifier.PUBLIC)
+						.returns(String[].class)
+						.addStatement("return COLUMN_NAMES")
+						.build())
+				.addMethod(readRow.build())
+				.addMethod(bindRow.build())
+				.build();
+		writeFile(modelInfo, mapper);
+	}
+
+	/**
+	 * Add a column read to readRow. The column's position in COLUMN_NAMES is its position in indexes
+	 */
+	private void addRowRead(MethodSpec.Builder readRow, int columnIndex, String format, Object... args) {
+		readRow.addStatement("index = indexes[$L]", columnIndex)
+				.beginControlFlow("if (index != -1)")
+				.addStatement(format, args)
+				.endControlFlow();
+	}
+
+	/**
+	 * Write the table schema class for this model. Builds the same columns and create string that
+	 * ReflectTable and Table.getCreateTableString would build with reflection.
+	 * @param modelInfo
+	 */
+	protected void writeSchema(ModelInfo modelInfo) {
+		ClassName modelClass = ClassName.get(modelInfo.model);
+		String tableName = modelInfo.model.getSimpleName().toString().toLowerCase();
+		ParameterizedTypeName columnList = ParameterizedTypeName.get(LIST, COLUMN);
+
+		MethodSpec.Builder createColumns = MethodSpec.methodBuilder("createColumns")
+				.addAnnotation(Override.class)
+				.addModifiers(Modifier.PUBLIC)
+				.returns(columnList)
+				.addStatement("$T columns = new $T<$T>($L)", columnList, ARRAY_LIST, COLUMN, modelInfo.fields.size());
+		StringBuilder createTable = new StringBuilder();
+		createTable.append("CREATE TABLE IF NOT EXISTS ").append(tableName).append(" (");
+		CodeBlock.Builder reflectTypes = CodeBlock.builder();
+		boolean firstColumn = true;
+		boolean firstType = true;
+		for (FieldInfo field : modelInfo.fields) {
+			boolean key = ID.equalsIgnoreCase(field.name);
+			if (key) {
+				createColumns.addStatement("columns.add(new $T($S, $T.$L, true))", COLUMN, field.name, COLUMN_TYPE, field.columnType);
+			} else {
+				createColumns.addStatement("columns.add(new $T($S, $T.$L))", COLUMN, field.name, COLUMN_TYPE, field.columnType);
+			}
+			if (!firstColumn) {
+				createTable.append(", ");
+			}
+			firstColumn = false;
+			// Same format as Column.getCreateString
+			createTable.append(field.name).append(" ").append(field.columnType).append(" ");
+			if (key) {
+				createTable.append(" PRIMARY KEY AUTOINCREMENT ");
+			}
+			if (field.isReflect()) {
+				reflectTypes.add(firstType ? "$T.class" : ", $T.class", field.typeName);
+				firstType = false;
+			}
+		}
+		createTable.append(")");
+		createColumns.addStatement("return columns");
+
+		TypeSpec schema = TypeSpec.classBuilder(modelInfo.getGeneratedName(SCHEMA_SUFFIX))
+				.addJavadoc("Generated table schema for {@link $T}. Do not edit.\n", modelClass)
+				.addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+				.superclass(GENERATED_TABLE_SCHEMA)
+				.addOriginatingElement(modelInfo.model)
+				.addField(FieldSpec.builder(String.class, "TABLE_NAME", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+						.initializer("$S", tableName)
+						.build())
+				.addField(FieldSpec.builder(String.class, "CREATE_TABLE", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+						.initializer("$S", createTable.toString())
+						.build())
+				.addMethod(MethodSpec.methodBuilder("getTableName")
+						.addAnnotation(Override.class)
+						.addModifiers(Modifier.PUBLIC)
+						.returns(String.class)
+						.addStatement("return TABLE_NAME")
+						.build())
+				.addMethod(createColumns.build())
+				.addMethod(MethodSpec.methodBuilder("getReflectTypes")
+						.addAnnotation(Override.class)
+						.addModifiers(Modifier.PUBLIC)
+						.returns(CLASS_ARRAY)
+						.addStatement("return new $T[] {$L}", CLASS, reflectTypes.build())
+						.build())
+				.addMethod(MethodSpec.methodBuilder("getCreateTableString")
+						.addAnnotation(Override.class)
+						.addModifiers(Modifier.PUBLIC)
+						.returns(String.class)
+						.addStatement("return CREATE_TABLE")
+						.build())
+				.build();
+		writeFile(modelInfo, schema);
+	}
+
+	protected void writeFile(ModelInfo modelInfo, TypeSpec typeSpec) {
+		try {
+			JavaFile.builder(modelInfo.packageName, typeSpec)
+					.addFileComment("Generated by EasySQLLibraryProcessor. Do not edit.")
+					.build()
+					.writeTo(processingEnv.getFiler());
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Could not write generated class for " + modelInfo.model.getQualifiedName() + ": " + e.getMessage(), modelInfo.model);
+		}
+	}
+
+	/**
+	 * Holds a model class and its column fields
+	 */
+	static class ModelInfo {
+		final TypeElement model;
+		final String packageName;
+		final List<FieldInfo> fields = new ArrayList<FieldInfo>();
+		boolean mapperAccessible = true;
+		boolean idFound = false;
+
+		ModelInfo(TypeElement model, String packageName) {
+			this.model = model;
+			this.packageName = packageName;
+		}
+
+		/**
+		 * Use the binary name so nested classes match Class.getName() at runtime (Outer$Inner_DataMapper)
+		 */
+		String getGeneratedName(String suffix) {
+			String qualifiedName = model.getQualifiedName().toString();
+			String simpleNames = packageName.isEmpty() ? qualifiedName : qualifiedName.substring(packageName.length() + 1);
+			return simpleNames.replace('.', '$') + suffix;
+		}
+	}
+
+	/**
+	 * Holds a single column, the field it comes from and how the generated mapper maps it
+	 */
+	static class FieldInfo {
+		// Mapper types
+		static final String INTEGER = "INTEGER";
+		static final String SHORT = "SHORT";
+		static final String LONG = "LONG";
+		static final String DOUBLE = "DOUBLE";
+		static final String TEXT = "TEXT";
+		static final String FLOAT = "FLOAT";
+		static final String BOOLEAN = "BOOLEAN";
+		static final String REFLECT = "REFLECT";
+
+		final String name;
+		final String columnType;
+		final String type;
+		final TypeName typeName;
+		final boolean isFinal;
+		String fieldName;
+		TypeElement typeElement;
+
+		FieldInfo(String name, String columnType, String type, TypeName typeName, boolean isFinal) {
+			this.name = name;
+			this.fieldName = name;
+			this.columnType = columnType;
+			this.type = type;
+			this.typeName = typeName;
+			this.isFinal = isFinal;
+		}
+
+		/**
+		 * Mapped fields are read and written by the generated mapper
+		 */
+		boolean isMapped() {
+			return type != null;
+		}
+
+		boolean isReflect() {
+			return REFLECT.equals(type);
+		}
+
+		/**
+		 * Statement that binds the field at "position". Primitives are bound without boxing
+		 */
+		String getStatementBind() {
+			if (!typeName.isPrimitive()) {
+				return "bindValue(statement, position, data.$N)";
+			}
+			switch (type) {
+				case DOUBLE:
+				case FLOAT:
+					return "statement.bindDouble(position, data.$N)";
+				case BOOLEAN:
+					return "statement.bindLong(position, data.$N ? 1 : 0)";
+				default:
+					return "statement.bindLong(position, data.$N)";
+			}
+		}
+
+		String getCursorRead() {
+			switch (type) {
+				case INTEGER:
+					return "cursor.getInt(index)";
+				case SHORT:
+					return "cursor.getShort(index)";
+				case LONG:
+					return "cursor.getLong(index)";
+				case DOUBLE:
+					return "cursor.getDouble(index)";
+				case FLOAT:
+					return "cursor.getFloat(index)";
+				case BOOLEAN:
+					return "cursor.getInt(index) == 1";
+				default:
+					return "cursor.getString(index)";
+			}
+		}
+	}
 }
@@ -0,0 +1,225 @@
+package com.mastertechsoftware.EasySQLLibrary;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.JavaFileObjects;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import javax.tools.JavaFileObject;
+
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static com.google.testing.compile.Compiler.javac;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Compiles test models with the processor and checks that the generated schemas and mappers describe the
+ * same columns ReflectTable finds with reflection. The library classes the generated code extends are
+ * stand-ins from the test resources.
+ */
+public class EasySQLLibraryProcessorTest {
+	static final String SQL_STUBS = "stubs/com/mastertechsoftware/easysqllibrary/sql/";
+	static final String MODELS = "models/com/example/";
+
+	private Compilation compilation;
+	private ClassLoader classLoader;
+
+	@Before
+	public void compile() {
+		List<JavaFileObject> sources = new ArrayList<JavaFileObject>();
+		for (String stub : new String[] { "ReflectTableInterface", "DBException", "Column", "GeneratedTableSchema", "GeneratedDataMapper" }) {
+			sources.add(JavaFileObjects.forResource(SQL_STUBS + stub + ".java"));
+		}
+		for (String model : new String[] { "BaseModel", "Address", "Person", "Secret" }) {
+			sources.add(JavaFileObjects.forResource(MODELS + model + ".java"));
+		}
+		compilation = javac().withProcessors(new EasySQLLibraryProcessor()).compile(sources);
+		assertThat(compilation).succeeded();
+		classLoader = new CompiledClassLoader(compilation);
+	}
+
+	@Test
+	public void schemaMatchesReflectionColumns() throws Exception {
+		for (String model : new String[] { "com.example.Address", "com.example.Person", "com.example.Secret" }) {
+			Object schema = newInstance(model + "_TableSchema");
+			List<?> columns = (List<?>) call(schema, "createColumns");
+			List<String> createStrings = new ArrayList<String>();
+			StringBuilder createTable = new StringBuilder("CREATE TABLE IF NOT EXISTS ").append(call(schema, "getTableName")).append(" (");
+			for (int i = 0; i < columns.size(); i++) {
+				String createString = (String) call(columns.get(i), "getCreateString");
+				createStrings.add(createString);
+				// Same as Table.buildCreateTableString
+				createTable.append(i == 0 ? "" : ", ").append(createString);
+			}
+			createTable.append(")");
+
+			Class<?> modelClass = classLoader.loadClass(model);
+			assertEquals(model, sorted(reflectColumns(modelClass)), sorted(createStrings));
+			assertEquals(model, modelClass.getSimpleName().toLowerCase(), call(schema, "getTableName"));
+			assertEquals(model, createTable.toString(), call(schema, "getCreateTableString"));
+		}
+	}
+
+	@Test
+	public void schemaListsNestedTables() throws Exception {
+		Object schema = newInstance("com.example.Person_TableSchema");
+		assertArrayEquals(new Class<?>[] { classLoader.loadClass("com.example.Address") }, (Class<?>[]) call(schema, "getReflectTypes"));
+	}
+
+	@Test
+	public void mapperMatchesReflectionColumns() throws Exception {
+		for (String model : new String[] { "com.example.Address", "com.example.Person" }) {
+			Object mapper = newInstance(model + "_DataMapper");
+			List<String> columnNames = Arrays.asList((String[]) call(mapper, "getColumnNames"));
+			assertEquals(model, sorted(mappedColumns(classLoader.loadClass(model))), sorted(columnNames));
+		}
+	}
+
+	@Test
+	public void privateFieldsKeepReflectionMapper() {
+		assertThat(compilation).generatedSourceFile("com.example.Secret_TableSchema");
+		for (JavaFileObject file : compilation.generatedSourceFiles()) {
+			assertFalse(file.getName(), file.getName().endsWith("Secret_DataMapper.java"));
+		}
+	}
+
+	/**
+	 * Columns ReflectTable.readProperties builds, as create strings
+	 */
+	private List<String> reflectColumns(Class<?> modelClass) throws ClassNotFoundException {
+		Class<?> tableInterface = classLoader.loadClass("com.mastertechsoftware.easysqllibrary.sql.ReflectTableInterface");
+		List<String> columns = new ArrayList<String>();
+		for (Field field : getPersistentFields(modelClass)) {
+			String columnType = getColumnType(field.getType());
+			if (columnType != null) {
+				boolean key = "_id".equalsIgnoreCase(field.getName());
+				columns.add(field.getName() + " " + columnType + " " + (key ? " PRIMARY KEY AUTOINCREMENT " : ""));
+			} else if (tableInterface.isAssignableFrom(field.getType())) {
+				columns.add(field.getName() + "_id INTEGER ");
+			}
+		}
+		return columns;
+	}
+
+	/**
+	 * Columns a generated mapper reads: every column except the types ReflectTable.Mapper leaves alone
+	 */
+	private List<String> mappedColumns(Class<?> modelClass) throws ClassNotFoundException {
+		Class<?> tableInterface = classLoader.loadClass("com.mastertechsoftware.easysqllibrary.sql.ReflectTableInterface");
+		List<String> columns = new ArrayList<String>();
+		for (Field field : getPersistentFields(modelClass)) {
+			Class<?> type = field.getType();
+			if (tableInterface.isAssignableFrom(type)) {
+				columns.add(field.getName() + "_id");
+			} else if (getColumnType(type) != null && type != Date.class && type != Number.class && type != Character.class) {
+				columns.add(field.getName());
+			}
+		}
+		return columns;
+	}
+
+	/**
+	 * Declared fields of the class and its superclasses without transient ones, like UtilReflector.getPersistentFields
+	 */
+	private static List<Field> getPersistentFields(Class<?> modelClass) {
+		List<Field> fields = new ArrayList<Field>();
+		for (Class<?> current = modelClass; current != null; current = current.getSuperclass()) {
+			for (Field field : current.getDeclaredFields()) {
+				if (!Modifier.isTransient(field.getModifiers())) {
+					fields.add(field);
+				}
+			}
+		}
+		return fields;
+	}
+
+	/**
+	 * Column type ReflectTable.readProperties gives a field type
+	 * @return type name or null if the field is not a value column
+	 */
+	private static String getColumnType(Class<?> type) {
+		if (type == int.class || type == Integer.class || type == Short.class || type == Number.class) {
+			return "INTEGER";
+		} else if (type == float.class || type == Float.class) {
+			return "FLOAT";
+		} else if (type == boolean.class || type == Boolean.class) {
+			return "BOOLEAN";
+		} else if (type == long.class || type == Long.class) {
+			return "LONG";
+		} else if (type == double.class || type == Double.class) {
+			return "DOUBLE";
+		} else if (type == Date.class) {
+			return "TIMESTAMP";
+		} else if (type == String.class || type == Character.class) {
+			return "TEXT";
+		}
+		return null;
+	}
+
+	private static List<String> sorted(List<String> values) {
+		List<String> sorted = new ArrayList<String>(values);
+		Collections.sort(sorted);
+		return sorted;
+	}
+
+	private Object newInstance(String className) throws Exception {
+		return classLoader.loadClass(className).newInstance();
+	}
+
+	private static Object call(Object target, String method) throws Exception {
+		return target.getClass().getMethod(method).invoke(target);
+	}
+
+	/**
+	 * Loads the classes the compilation wrote
+	 */
+	static class CompiledClassLoader extends ClassLoader {
+		private final Compilation compilation;
+
+		CompiledClassLoader(Compilation compilation) {
+			super(CompiledClassLoader.class.getClassLoader());
+			this.compilation = compilation;
+		}
+
+		@Override
+		protected Class<?> findClass(String name) throws ClassNotFoundException {
+			String path = "/" + name.replace('.', '/') + ".class";
+			for (JavaFileObject file : compilation.generatedFiles()) {
+				if (file.getKind() == JavaFileObject.Kind.CLASS && file.toUri().getPath().endsWith(path)) {
+					try {
+						byte[] bytes = read(file);
+						return defineClass(name, bytes, 0, bytes.length);
+					} catch (IOException e) {
+						throw new ClassNotFoundException(name, e);
+					}
+				}
+			}
+			throw new ClassNotFoundException(name);
+		}
+
+		private static byte[] read(JavaFileObject file) throws IOException {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			try (InputStream input = file.openInputStream()) {
+				byte[] buffer = new byte[4096];
+				int count;
+				while ((count = input.read(buffer)) != -1) {
+					output.write(buffer, 0, count);
+				}
+			}
+			return output.toByteArray();
+		}
+	}
+}
@@ -0,0 +1,6 @@
+package com.example;
+
+public class Address extends BaseModel {
+	public String street;
+	public Integer number;
+}
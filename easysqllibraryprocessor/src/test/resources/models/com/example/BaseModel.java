@@ -0,0 +1,19 @@
+package com.example;
+
+import com.mastertechsoftware.easysqllibrary.sql.ReflectTableInterface;
+
+public abstract class BaseModel implements ReflectTableInterface {
+	public int _id;
+	public String createdBy;
+	public transient String cache;
+
+	@Override
+	public int getId() {
+		return _id;
+	}
+
+	@Override
+	public void setId(int id) {
+		_id = id;
+	}
+}
@@ -0,0 +1,15 @@
+package com.example;
+
+import java.util.Date;
+
+public class Person extends BaseModel {
+	public String name;
+	public long born;
+	public Double height;
+	public Boolean active;
+	public float score;
+	public Short rank;
+	public Date updated;
+	public Address address;
+	transient int skipped;
+}
@@ -0,0 +1,6 @@
+package com.example;
+
+public class Secret extends BaseModel {
+	private String hidden;
+	public boolean locked;
+}
@@ -0,0 +1,49 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+/**
+ * Stand-in for the library column. getCreateString matches the library so create strings can be compared
+ */
+public class Column {
+	public enum COLUMN_TYPE {
+		INTEGER,
+		LONG,
+		DOUBLE,
+		TEXT,
+		FLOAT,
+		BOOLEAN,
+		TIMESTAMP,
+		BLOB
+	}
+
+	protected String name;
+	protected COLUMN_TYPE type;
+	protected boolean key = false;
+
+	public Column(String name, COLUMN_TYPE type) {
+		this.name = name;
+		this.type = type;
+	}
+
+	public Column(String name, COLUMN_TYPE type, boolean key) {
+		this.key = key;
+		this.name = name;
+		this.type = type;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public COLUMN_TYPE getType() {
+		return type;
+	}
+
+	public String getCreateString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(name).append(" ").append(type.toString()).append(" ");
+		if (key) {
+			builder.append(" PRIMARY KEY AUTOINCREMENT ");
+		}
+		return builder.toString();
+	}
+}
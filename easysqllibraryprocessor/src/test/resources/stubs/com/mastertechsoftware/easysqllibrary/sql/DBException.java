@@ -0,0 +1,11 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+/**
+ * Stand-in for the library exception so generated mappers compile in tests
+ */
+public class DBException extends Exception {
+
+	public DBException(String detailMessage) {
+		super(detailMessage);
+	}
+}
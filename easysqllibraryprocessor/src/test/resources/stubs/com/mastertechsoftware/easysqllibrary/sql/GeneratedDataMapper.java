@@ -0,0 +1,32 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * Stand-in for the library base class of generated mappers. Only the members generated code uses
+ */
+public abstract class GeneratedDataMapper<T> {
+
+	public abstract void write(ContentValues cv, Column column, T data);
+
+	public abstract void read(Cursor cursor, Column column, T data) throws DBException;
+
+	public abstract String[] getColumnNames();
+
+	public abstract void readRow(Cursor cursor, int[] indexes, T data) throws DBException;
+
+	public abstract void bindRow(SQLiteStatement statement, int[] positions, T data);
+
+	protected int getColumnIndex(Cursor cursor, String column) {
+		return cursor.getColumnIndex(column);
+	}
+
+	protected static void bindValue(SQLiteStatement statement, int position, Object value) {
+	}
+
+	protected <E> E readReflectEntry(Cursor cursor, int columnIndex, Class<E> type) throws DBException {
+		return null;
+	}
+}
@@ -0,0 +1,17 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+import java.util.List;
+
+/**
+ * Stand-in for the library base class of generated schemas
+ */
+public abstract class GeneratedTableSchema {
+
+	public abstract String getTableName();
+
+	public abstract List<Column> createColumns();
+
+	public abstract Class<?>[] getReflectTypes();
+
+	public abstract String getCreateTableString();
+}
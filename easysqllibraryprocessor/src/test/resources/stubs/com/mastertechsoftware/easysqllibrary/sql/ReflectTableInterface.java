@@ -0,0 +1,9 @@
+package com.mastertechsoftware.easysqllibrary.sql;
+
+/**
+ * Stand-in for the library interface so models compile in tests
+ */
+public interface ReflectTableInterface {
+	int getId();
+	void setId(int id);
+}